@@ -0,0 +1,48 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ColorRampTest {
+
+    @Test
+    public void posterizedLookupMatchesComputeRGB() {
+        for (int bands : new int[]{1, 3, 5, 7, 10, 255}) {
+            for (boolean color : new boolean[]{false, true}) {
+                ColorRamp ramp = new ColorRamp(color, true, true, bands);
+
+                // Every band threshold and the floats right beside it
+                for (int k = 0; k <= bands + 1; k++) {
+                    float threshold = (float) k / (bands + 1);
+                    for (float c : new float[]{Math.nextDown(threshold), threshold, Math.nextUp(threshold)})
+                        if (c >= 0 && c <= 1)
+                            assertEquals(bands + " bands at " + c, ramp.computeRGB(c), ramp.lookup(c));
+                }
+
+                for (int i = 0; i <= 100000; i++) {
+                    float c = i / 100000f;
+                    assertEquals(bands + " bands at " + c, ramp.computeRGB(c), ramp.lookup(c));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void smoothLookupIsWithinHalfABin() {
+        ColorRamp ramp = new ColorRamp(true, true, false, 0);
+
+        for (int i = 0; i <= 100000; i++) {
+            float c = i / 100000f;
+            int expected = ramp.computeRGB(c), actual = ramp.lookup(c);
+
+            // The steepest component of the faded false color ramp has a slope of 2 * 1.875
+            for (int shift = 0; shift <= 16; shift += 8)
+                assertEquals("at " + c, (expected >> shift) & 255, (actual >> shift) & 255,
+                        255 * 3.75 / (2 * (ColorRamp.DEFAULT_BINS - 1)) + 1);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTooFewBins() {
+        new ColorRamp(false, false, false, 0, ColorRamp.MIN_BINS - 1);
+    }
+}
@@ -0,0 +1,88 @@
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the coordinate hash and the permutation tables shuffled with it.
+ */
+public class CoordinateHashTest {
+
+    private static final int[] SEEDS = {0, 1, -1, 42, 214759, Integer.MIN_VALUE, Integer.MAX_VALUE};
+
+    @Test
+    public void rowsEqualSingleHashes() {
+        int[] hashes = new int[70];
+        float[] units = new float[70];
+
+        for (int seed : SEEDS) {
+            for (int[] p : new int[][]{{0, 0, 0}, {-35, 7, 0}, {Integer.MAX_VALUE - 30, -4, 9}}) {
+                CoordinateHash.hashRow(p[0], p[1], p[2], seed, hashes, 3, 64);
+                CoordinateHash.unitRow(p[0], p[1], p[2], seed, units, 3, 64);
+
+                for (int i = 0; i < 64; i++) {
+                    assertEquals(CoordinateHash.hash(p[0] + i, p[1], p[2], seed), hashes[3 + i]);
+                    assertEquals(Float.floatToIntBits(CoordinateHash.unit(p[0] + i, p[1], p[2], seed)), Float.floatToIntBits(units[3 + i]));
+                    assertTrue(units[3 + i] >= 0 && units[3 + i] < 1);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shuffledTablesArePermutations() {
+        Set<String> tables = new HashSet<String>();
+
+        for (int seed = -500; seed < 500; seed++)
+            tables.add(assertPermutation(new SimplexNoise(seed, 1, 2, 1)));
+        for (int seed : SEEDS) {
+            assertPermutation(new PerlinNoise2D(seed, 1, 2, 1));
+            assertPermutation(new PerlinNoise3D(seed, 1, 2, 1));
+        }
+
+        // Every seed shuffles differently
+        assertEquals(1000, tables.size());
+    }
+
+    @Test
+    public void shuffleIsUniform() {
+        // How often every value lands at the first and the last position over many seeds
+        int seeds = 256 * 100;
+        int[] first = new int[256], last = new int[256];
+
+        for (int seed = 0; seed < seeds; seed++) {
+            int[] p = new ValueNoise(seed, 1, 2, 1)._noisePermutations;
+            first[p[0]]++;
+            last[p[255]]++;
+        }
+
+        // Critical value of the chi-square test with 255 degrees of freedom at the 0.1% level
+        assertTrue("first position", chiSquare(first, seeds) < 330.5);
+        assertTrue("last position", chiSquare(last, seeds) < 330.5);
+    }
+
+    //Checks that the first half of the table holds every value once and the second half repeats it
+    private static String assertPermutation(LatticeNoise noise) {
+        int[] p = noise._noisePermutations;
+        assertEquals(512, p.length);
+
+        int[] sorted = Arrays.copyOf(p, 256);
+        Arrays.sort(sorted);
+        for (int i = 0; i < 256; i++) {
+            assertEquals("seed " + noise.getSeed(), i, sorted[i]);
+            assertEquals("seed " + noise.getSeed(), p[i], p[i + 256]);
+        }
+        return Arrays.toString(Arrays.copyOf(p, 256));
+    }
+
+    private static double chiSquare(int[] counts, int total) {
+        double expected = (double) total / counts.length, chi = 0;
+        for (int count : counts)
+            chi += (count - expected) * (count - expected) / expected;
+        return chi;
+    }
+}
@@ -0,0 +1,130 @@
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ErosionTest {
+
+    // Neither a multiple of the thermal bands nor of the droplet tiles
+    private static final int WIDTH = 300, HEIGHT = 270;
+
+    @Test
+    public void thermalKeepsTheMass() {
+        Field heights = terrain(WIDTH, HEIGHT);
+        double before = sum(heights);
+
+        new Erosion(ForkJoinPool.commonPool(), 1).thermal(heights, 20, 0.002f, 0.5f);
+
+        assertTrue("nothing eroded", changed(terrain(WIDTH, HEIGHT), heights) > WIDTH * HEIGHT / 10);
+        assertEquals(before, sum(heights), before * 1e-5);
+    }
+
+    @Test
+    public void resultsDoNotDependOnTheThreadCount() {
+        Field thermal = null, hydraulic = null;
+
+        for (int threads : new int[]{1, 2, 3, 8}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                Erosion erosion = new Erosion(pool, 42);
+
+                Field t = terrain(WIDTH, HEIGHT);
+                erosion.thermal(t, 10, 0.002f, 0.5f);
+                Field h = terrain(WIDTH, HEIGHT);
+                erosion.hydraulic(h, 0.5f, 64);
+
+                if (thermal == null) {
+                    thermal = t;
+                    hydraulic = h;
+                    assertTrue("nothing eroded", changed(terrain(WIDTH, HEIGHT), h) > 0);
+                } else {
+                    assertEquals("thermal with " + threads + " threads", 0, changed(thermal, t));
+                    assertEquals("hydraulic with " + threads + " threads", 0, changed(hydraulic, h));
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void hydraulicDependsOnTheSeed() {
+        Field a = terrain(WIDTH, HEIGHT), b = terrain(WIDTH, HEIGHT);
+        new Erosion(ForkJoinPool.commonPool(), 1).hydraulic(a, 0.5f, 64);
+        new Erosion(ForkJoinPool.commonPool(), 2).hydraulic(b, 0.5f, 64);
+        assertTrue(changed(a, b) > 0);
+    }
+
+    @Test
+    public void dropletsStayWithinTheirReach() {
+        int size = 3 * Erosion.DROPLET_TILE, x0 = Erosion.DROPLET_TILE, y0 = Erosion.DROPLET_TILE;
+
+        for (boolean tilted : new boolean[]{false, true}) {
+            Field heights = terrain(size, size);
+            // A steep slope lets the droplets run their whole lifetime in a straight line
+            if (tilted)
+                for (int y = 0; y < size; y++)
+                    for (int x = 0; x < size; x++)
+                        heights.set(x, y, heights.get(x, y) + 0.05f * (x + y));
+            Field original = Field.onHeap(size, size);
+            copy(heights, original);
+
+            new Erosion(ForkJoinPool.commonPool(), 5).hydraulicTile(heights, 2, 64, 0, 1, 1);
+
+            // A droplet moves a pixel per step and touches the samples up to one after its position
+            int reach = Erosion.DROPLET_LIFETIME + 1, farthest = 0;
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    if (heights.get(x, y) == original.get(x, y))
+                        continue;
+
+                    int distance = Math.max(Math.max(x0 - x, x - (x0 + Erosion.DROPLET_TILE - 1)),
+                            Math.max(y0 - y, y - (y0 + Erosion.DROPLET_TILE - 1)));
+                    assertTrue("sample " + x + "," + y + " is " + distance + " pixels from the tile", distance <= reach);
+                    farthest = Math.max(farthest, distance);
+                }
+            }
+
+            assertTrue(reach < Erosion.DROPLET_REACH);
+            if (tilted)
+                assertTrue("droplets only ran " + farthest + " pixels out of the tile", farthest > reach / 2);
+        }
+    }
+
+    //The mixed field of the engine, the height fields erosion is made for
+    private static Field terrain(int width, int height) {
+        Field plasma = Field.onHeap(width, height), perlin = Field.onHeap(width, height), mixed = Field.onHeap(width, height);
+        new GenerationEngine(ForkJoinPool.commonPool(), new PlasmaGenerator(42, 128, 32, 1),
+                new PerlinNoise3D(42, 5, PerlinNoise3D.DEFAULT_LACUNARITY, PerlinNoise3D.DEFAULT_PERSISTENCE))
+                .generate(plasma, perlin, mixed);
+        return mixed;
+    }
+
+    private static double sum(Field field) {
+        double sum = 0;
+        for (int y = 0; y < field.getHeight(); y++)
+            for (int x = 0; x < field.getWidth(); x++)
+                sum += field.get(x, y);
+        return sum;
+    }
+
+    //Number of samples whose bits differ
+    private static int changed(Field a, Field b) {
+        int changed = 0;
+        for (int y = 0; y < a.getHeight(); y++)
+            for (int x = 0; x < a.getWidth(); x++)
+                if (Float.floatToIntBits(a.get(x, y)) != Float.floatToIntBits(b.get(x, y)))
+                    changed++;
+        return changed;
+    }
+
+    private static void copy(Field from, Field to) {
+        float[] row = new float[from.getWidth()];
+        for (int y = 0; y < from.getHeight(); y++) {
+            from.getRow(0, y, row, 0, row.length);
+            to.setRow(0, y, row, 0, row.length);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the distributions of the ziggurat samplers, that the bulk fills return the values of
+ * the single draws and that split children are reproducible and unrelated. The tolerances are at least five standard errors of the estimates for
+ * {@link #SAMPLES} samples, and the seeds are fixed, so the results do not change between runs.
+ */
+public class FastRandomTest {
+
+    private static final int SAMPLES = 1 << 21;
+
+    // Start of the tails of the ziggurats, the samples beyond come from the tail methods
+    private static final double NORMAL_R = 3.442619855899;
+    private static final double EXPONENTIAL_R = 7.69711747013104972;
+
+    @Test
+    public void normalDoubleHasStandardNormalMoments() {
+        FastRandom random = new FastRandom(214759);
+        double[] samples = new double[SAMPLES];
+
+        for (int i = 0; i < SAMPLES; i++)
+            samples[i] = random.normalDouble();
+
+        assertNormal(samples);
+    }
+
+    @Test
+    public void normalDoublesHaveStandardNormalMoments() {
+        double[] samples = new double[SAMPLES];
+        new FastRandom(42).normalDoubles(samples, 0, SAMPLES);
+
+        assertNormal(samples);
+    }
+
+    @Test
+    public void exponentialDoubleHasExponentialMoments() {
+        FastRandom random = new FastRandom(214759);
+        double[] samples = new double[SAMPLES];
+
+        for (int i = 0; i < SAMPLES; i++)
+            samples[i] = random.exponentialDouble();
+
+        double[] moments = moments(samples);
+        assertEquals("mean", 1, moments[0], 0.004);
+        assertEquals("variance", 1, moments[1], 0.01);
+        assertEquals("skewness", 2, moments[2], 0.05);
+        assertEquals("excess kurtosis", 6, moments[3], 0.5);
+
+        assertEquals("P(x > 3)", Math.exp(-3), fractionAbove(samples, 3), 8e-4);
+        assertEquals("P(x > R)", Math.exp(-EXPONENTIAL_R), fractionAbove(samples, EXPONENTIAL_R), 8e-5);
+        assertEquals("P(x > 10)", Math.exp(-10), fractionAbove(samples, 10), 2e-5);
+
+        for (double x : samples)
+            assertTrue("negative sample " + x, x >= 0);
+
+        double[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        double d = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            double cdf = 1 - Math.exp(-sorted[i]);
+            d = Math.max(d, Math.max(cdf - (double) i / sorted.length, (double) (i + 1) / sorted.length - cdf));
+        }
+        // Critical value of the Kolmogorov-Smirnov test at the 0.1% level
+        assertTrue("Kolmogorov-Smirnov distance " + d, d < 1.95 / Math.sqrt(sorted.length));
+    }
+
+    @Test
+    public void bulkFillsEqualSingleDraws() {
+        int offset = 3, length = 1001;
+
+        FastRandom bulk = new FastRandom(7), single = new FastRandom(7);
+
+        double[] doubles = new double[length + 2 * offset];
+        double[] expectedDoubles = new double[doubles.length];
+        bulk.normalDoubles(doubles, offset, length);
+        for (int i = 0; i < length; i++)
+            expectedDoubles[offset + i] = single.normalDouble();
+        assertArrayEquals(expectedDoubles, doubles, 0);
+
+        float[] floats = new float[length + 2 * offset];
+        float[] expectedFloats = new float[floats.length];
+        bulk.normalFloats(floats, offset, length);
+        for (int i = 0; i < length; i++)
+            expectedFloats[offset + i] = (float) single.normalDouble();
+        assertArrayEquals(expectedFloats, floats, 0);
+
+        bulk.exponentialDoubles(doubles, offset, length);
+        for (int i = 0; i < length; i++)
+            expectedDoubles[offset + i] = single.exponentialDouble();
+        assertArrayEquals(expectedDoubles, doubles, 0);
+
+        bulk.exponentialFloats(floats, offset, length);
+        for (int i = 0; i < length; i++)
+            expectedFloats[offset + i] = (float) single.exponentialDouble();
+        assertArrayEquals(expectedFloats, floats, 0);
+
+        int[] ints = new int[length + 2 * offset];
+        int[] expectedInts = new int[ints.length];
+        bulk.randomInts(ints, offset, length);
+        for (int i = 0; i < length; i++)
+            expectedInts[offset + i] = single.randomInt();
+        assertArrayEquals(expectedInts, ints);
+
+        bulk.randomFloats(floats, offset, length);
+        for (int i = 0; i < length; i++)
+            expectedFloats[offset + i] = single.randomFloat();
+        assertArrayEquals(expectedFloats, floats, 0);
+
+        // Both generators must still be in the same state
+        assertEquals(single.randomLong(), bulk.randomLong());
+    }
+
+    @Test
+    public void splitIsDeterministicAndIndependentOfOrder() {
+        long[] indices = {0, 1, 2, 3, 100, -1, -2, Long.MAX_VALUE, Long.MIN_VALUE};
+
+        FastRandom parent = new FastRandom(42);
+        long[][] forward = new long[indices.length][];
+        for (int i = 0; i < indices.length; i++)
+            forward[i] = draw(parent.split(indices[i]), 16);
+
+        // Backwards, with values drawn from the children in between, on a new parent
+        FastRandom other = new FastRandom(42);
+        for (int i = indices.length - 1; i >= 0; i--) {
+            FastRandom child = other.split(indices[i]);
+            child.randomLong();
+            assertArrayEquals("index " + indices[i], Arrays.copyOfRange(forward[i], 1, 16), draw(child, 15));
+        }
+
+        // Splitting by index leaves the parent alone
+        assertArrayEquals(draw(new FastRandom(42), 16), draw(parent, 16));
+
+        // split() follows the parent, so the same order gives the same children
+        FastRandom a = new FastRandom(7), b = new FastRandom(7);
+        for (int i = 0; i < 10; i++)
+            assertArrayEquals(draw(a.split(), 8), draw(b.split(), 8));
+    }
+
+    @Test
+    public void childrenDifferFromTheParentAndEachOther() {
+        int children = 4096, values = 8;
+        FastRandom parent = new FastRandom(42);
+        Set<Long> seen = new HashSet<Long>();
+
+        for (long value : draw(new FastRandom(42), values))
+            seen.add(value);
+        for (int i = 0; i < children; i++)
+            for (long value : draw(parent.split(i), values))
+                assertTrue("child " + i + " repeats " + value, seen.add(value));
+
+        // The same index of another parent, even one whose seed differs by a bit
+        for (long seed : new long[]{43, 42 ^ 1L << 63})
+            assertNotEquals(draw(parent.split(5), 1)[0], draw(new FastRandom(seed).split(5), 1)[0]);
+
+        // Neighbouring indices give uncorrelated streams
+        int n = 1 << 16;
+        for (long index : new long[]{0, 1000, -1}) {
+            FastRandom x = parent.split(index), y = parent.split(index + 1);
+            double sxy = 0, sx = 0, sy = 0, sxx = 0, syy = 0;
+            for (int i = 0; i < n; i++) {
+                double u = x.randomFloat(), v = y.randomFloat();
+                sx += u;
+                sy += v;
+                sxy += u * v;
+                sxx += u * u;
+                syy += v * v;
+            }
+            double r = (n * sxy - sx * sy) / Math.sqrt((n * sxx - sx * sx) * (n * syy - sy * sy));
+            assertEquals("correlation of the children " + index + " and " + (index + 1), 0, r, 5 / Math.sqrt(n));
+        }
+    }
+
+    private static long[] draw(FastRandom random, int count) {
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++)
+            values[i] = random.randomLong();
+        return values;
+    }
+
+    private static void assertNormal(double[] samples) {
+        double[] moments = moments(samples);
+        assertEquals("mean", 0, moments[0], 0.004);
+        assertEquals("variance", 1, moments[1], 0.005);
+        assertEquals("skewness", 0, moments[2], 0.01);
+        assertEquals("excess kurtosis", 0, moments[3], 0.02);
+
+        // Two-sided tail probabilities of the standard normal distribution
+        assertEquals("P(|x| > 3)", 2.6997960632601866e-3, fractionOutside(samples, 3), 2e-4);
+        assertEquals("P(|x| > R)", 5.7609e-4, fractionOutside(samples, NORMAL_R), 8e-5);
+        assertEquals("P(|x| > 4.5)", 6.7953e-6, fractionOutside(samples, 4.5), 1e-5);
+    }
+
+    //Mean, variance, skewness and excess kurtosis
+    private static double[] moments(double[] samples) {
+        double mean = 0;
+        for (double x : samples)
+            mean += x;
+        mean /= samples.length;
+
+        double m2 = 0, m3 = 0, m4 = 0;
+        for (double x : samples) {
+            double d = x - mean, d2 = d * d;
+            m2 += d2;
+            m3 += d2 * d;
+            m4 += d2 * d2;
+        }
+        m2 /= samples.length;
+        m3 /= samples.length;
+        m4 /= samples.length;
+
+        return new double[]{mean, m2, m3 / Math.pow(m2, 1.5), m4 / (m2 * m2) - 3};
+    }
+
+    private static double fractionAbove(double[] samples, double limit) {
+        int count = 0;
+        for (double x : samples)
+            if (x > limit)
+                count++;
+        return (double) count / samples.length;
+    }
+
+    private static double fractionOutside(double[] samples, double limit) {
+        int count = 0;
+        for (double x : samples)
+            if (Math.abs(x) > limit)
+                count++;
+        return (double) count / samples.length;
+    }
+}
@@ -0,0 +1,62 @@
+import org.junit.Test;
+
+import java.nio.ReadOnlyBufferException;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FieldCacheTest {
+
+    private static final FieldCache.Key KEY = new FieldCache.Key(42, 3, PerlinNoise3D.DEFAULT_LACUNARITY,
+            PerlinNoise3D.DEFAULT_PERSISTENCE, 1, 256, 32, 256, 64);
+
+    @Test
+    public void cachedFieldsAreSharedAndReadOnly() {
+        for (boolean offHeap : new boolean[]{false, true}) {
+            FieldCache cache = new FieldCache(ForkJoinPool.commonPool(), 1 << 20, offHeap);
+            FieldCache.Fields fields = cache.get(KEY);
+
+            assertSame(fields, cache.get(KEY));
+            assertEquals(offHeap, fields.mixed.isOffHeap());
+
+            for (Field field : new Field[]{fields.plasma, fields.perlin, fields.mixed}) {
+                assertTrue(field.isReadOnly());
+                assertNull(field.array());
+
+                float before = field.get(3, 5);
+                try {
+                    field.set(3, 5, before + 1);
+                    fail("set on a cached field");
+                } catch (ReadOnlyBufferException expected) {
+                }
+                try {
+                    field.setRow(0, 5, new float[4], 0, 4);
+                    fail("setRow on a cached field");
+                } catch (ReadOnlyBufferException expected) {
+                }
+                assertEquals(before, field.get(3, 5), 0);
+            }
+        }
+    }
+
+    @Test
+    public void cachedFieldsMatchTheEngine() {
+        FieldCache.Fields fields = new FieldCache(ForkJoinPool.commonPool(), 1 << 20, false).get(KEY);
+
+        Field plasma = Field.onHeap(256, 64), perlin = Field.onHeap(256, 64), mixed = Field.onHeap(256, 64);
+        new GenerationEngine(ForkJoinPool.commonPool(), new PlasmaGenerator(42, 256, 32, 1),
+                new PerlinNoise3D(42, 3, PerlinNoise3D.DEFAULT_LACUNARITY, PerlinNoise3D.DEFAULT_PERSISTENCE))
+                .generate(plasma, perlin, mixed);
+
+        float[] row = new float[256];
+        for (int y = 0; y < 64; y++) {
+            fields.mixed.getRow(0, y, row, 0, 256);
+            for (int x = 0; x < 256; x++)
+                assertEquals(Float.floatToIntBits(mixed.get(x, y)), Float.floatToIntBits(row[x]));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class FieldCodecTest {
+
+    // Odd widths, so the high and low byte halves of a 16 bit row do not line up with anything
+    private static final int[][] SIZES = {{1, 1}, {37, 11}, {255, 3}, {256, 32}, {1, 17}};
+
+    @Test
+    public void roundtripStaysWithinHalfAStep() throws IOException {
+        for (int bits : new int[]{1, 8, 12, 16}) {
+            float halfStep = 0.5f / ((1 << bits) - 1);
+            assertEquals(halfStep, FieldCodec.getMaxError(bits), Math.ulp(1.0f));
+
+            for (int[] size : SIZES) {
+                for (Field field : new Field[]{plasma(size[0], size[1]), random(size[0], size[1])}) {
+                    Field decoded = FieldCodec.decode(FieldCodec.encode(field, bits));
+                    assertEquals(size[0], decoded.getWidth());
+                    assertEquals(size[1], decoded.getHeight());
+
+                    for (int y = 0; y < size[1]; y++)
+                        for (int x = 0; x < size[0]; x++) {
+                            float expected = PlasmaGenerator.clip(field.get(x, y));
+                            assertEquals(bits + " bits, " + size[0] + "x" + size[1] + " at " + x + "," + y,
+                                    expected, decoded.get(x, y), FieldCodec.getMaxError(bits));
+                        }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void levelsAndLayoutsDecodeTheSame() throws IOException {
+        Field field = plasma(37, 11);
+        Field expected = FieldCodec.decode(FieldCodec.encode(field, 16));
+
+        // Any deflate level and an off heap destination give the same samples
+        Field dest = Field.offHeap(37, 11);
+        FieldCodec.decode(FieldCodec.encode(field, 16, 9), dest);
+        for (int y = 0; y < 11; y++)
+            for (int x = 0; x < 37; x++)
+                assertEquals(expected.get(x, y), dest.get(x, y), 0);
+    }
+
+    @Test
+    public void invalidDataIsRejected() {
+        byte[] data = FieldCodec.encode(plasma(37, 11), 8);
+
+        assertIOException(() -> FieldCodec.decode(new byte[4]));
+        assertIOException(() -> FieldCodec.decode(Arrays.copyOf(data, data.length / 2)));
+        assertIOException(() -> FieldCodec.decode(data, Field.onHeap(36, 11)));
+
+        byte[] damaged = data.clone();
+        damaged[0] ^= 1;
+        assertIOException(() -> FieldCodec.decode(damaged));
+
+        try {
+            FieldCodec.encode(plasma(4, 4), 17);
+            fail("17 bits accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private static Field plasma(int width, int height) {
+        Field field = Field.onHeap(width, height);
+        new PlasmaGenerator(42, 256, 32, 1).calcPlasma(field);
+        return field;
+    }
+
+    //Samples without any smoothness, slightly outside of [0;1] too
+    private static Field random(int width, int height) {
+        Random random = new Random(width * 31 + height);
+        Field field = Field.onHeap(width, height);
+        for (int y = 0; y < height; y++)
+            for (int x = 0; x < width; x++)
+                field.set(x, y, random.nextFloat() * 1.2f - 0.1f);
+        return field;
+    }
+
+    private interface Decode {
+        void run() throws IOException;
+    }
+
+    private static void assertIOException(Decode decode) {
+        try {
+            decode.run();
+            fail("decoded");
+        } catch (IOException expected) {
+        }
+    }
+}
@@ -0,0 +1,97 @@
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FieldTest {
+
+    private static final int WIDTH = 37, HEIGHT = 11;
+
+    @Test
+    public void layoutsBehaveTheSame() {
+        Field heap = Field.onHeap(WIDTH, HEIGHT);
+        Field direct = Field.offHeap(WIDTH, HEIGHT);
+        Field wrapped = Field.wrap(WIDTH, HEIGHT, FloatBuffer.allocate(WIDTH * HEIGHT + 5));
+
+        assertFalse(heap.isOffHeap());
+        assertTrue(direct.isOffHeap());
+        assertEquals(4L * WIDTH * HEIGHT, direct.getBytes());
+
+        for (Field field : new Field[]{heap, direct, wrapped})
+            fill(field);
+
+        float[] expected = heap.array();
+        for (Field field : new Field[]{direct, wrapped}) {
+            float[] row = new float[WIDTH + 4];
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++)
+                    assertEquals(expected[y * WIDTH + x], field.get(x, y), 0);
+
+                field.getRow(3, y, row, 2, WIDTH - 3);
+                for (int x = 3; x < WIDTH; x++)
+                    assertEquals(expected[y * WIDTH + x], row[2 + x - 3], 0);
+            }
+
+            float[] all = new float[WIDTH * HEIGHT];
+            field.asBuffer().get(all);
+            assertArrayEquals(expected, all, 0);
+        }
+    }
+
+    //Writes single samples and partial rows, so both write paths and the row offsets are used
+    private static void fill(Field field) {
+        float[] row = new float[WIDTH + 2];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++)
+                row[1 + x] = y * 1000 + x;
+            field.setRow(0, y, row, 1, WIDTH / 2);
+            for (int x = WIDTH / 2; x < WIDTH; x++)
+                field.set(x, y, y * 1000 + x);
+        }
+    }
+
+    @Test
+    public void rowsOutsideOfTheFieldAreRejected() {
+        int[][] segments = {
+                {0, -1, 1}, {0, HEIGHT, 1}, {-1, 0, 2}, {0, 0, WIDTH + 1}, {WIDTH - 2, 3, 3}, {0, 0, -1}
+        };
+
+        for (Field field : new Field[]{Field.onHeap(WIDTH, HEIGHT), Field.offHeap(WIDTH, HEIGHT)}) {
+            float[] row = new float[WIDTH + 4];
+            for (int[] s : segments) {
+                try {
+                    field.getRow(s[0], s[1], row, 0, s[2]);
+                    fail("getRow " + s[0] + "+" + s[2] + " at y=" + s[1]);
+                } catch (IndexOutOfBoundsException expected) {
+                }
+                try {
+                    field.setRow(s[0], s[1], row, 0, s[2]);
+                    fail("setRow " + s[0] + "+" + s[2] + " at y=" + s[1]);
+                } catch (IndexOutOfBoundsException expected) {
+                }
+            }
+        }
+    }
+
+    @Test
+    public void sizeLimitsAreChecked() {
+        // 2^29 samples would take exactly 2 GB in a direct buffer, one more row is too much
+        assertRejected(() -> Field.offHeap(1 << 15, (1 << 14) + 1));
+        assertRejected(() -> Field.onHeap(1 << 16, 1 << 16));
+        assertRejected(() -> Field.onHeap(-1, 4));
+        assertRejected(() -> Field.wrap(WIDTH, HEIGHT, FloatBuffer.allocate(WIDTH * HEIGHT - 1)));
+    }
+
+    private static void assertRejected(Runnable create) {
+        try {
+            create.run();
+            fail("field created");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
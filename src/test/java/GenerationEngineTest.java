@@ -0,0 +1,93 @@
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+public class GenerationEngineTest {
+
+    private static final int TILE_WIDTH = 128, TILE_HEIGHT = 32;
+    private static final int TILES_X = 3, TILES_Y = 3;
+
+    @Test
+    public void tilesMatchTheWholeField() {
+        for (boolean singlePrecision : new boolean[]{false, true}) {
+            GenerationEngine engine = new GenerationEngine(ForkJoinPool.commonPool(),
+                    new PlasmaGenerator(42, TILE_WIDTH, TILE_HEIGHT, 1),
+                    new PerlinNoise3D(42, 3, PerlinNoise3D.DEFAULT_LACUNARITY, PerlinNoise3D.DEFAULT_PERSISTENCE),
+                    singlePrecision);
+
+            int width = TILES_X * TILE_WIDTH, height = TILES_Y * TILE_HEIGHT;
+            Field[] whole = {Field.onHeap(width, height), Field.onHeap(width, height), Field.onHeap(width, height)};
+            engine.generate(whole[0], whole[1], whole[2]);
+
+            // The tiles are stitched together to the same size, so shared edges are compared too
+            Field[] stitched = {Field.onHeap(width, height), Field.onHeap(width, height), Field.onHeap(width, height)};
+            Field[] tile = {Field.onHeap(TILE_WIDTH, TILE_HEIGHT), Field.onHeap(TILE_WIDTH, TILE_HEIGHT),
+                    Field.onHeap(TILE_WIDTH, TILE_HEIGHT)};
+            float[] row = new float[TILE_WIDTH];
+
+            for (int tileY = 0; tileY < TILES_Y; tileY++) {
+                for (int tileX = 0; tileX < TILES_X; tileX++) {
+                    engine.generateTile(tileX, tileY, tile[0], tile[1], tile[2]);
+
+                    for (int f = 0; f < 3; f++) {
+                        for (int y = 0; y < TILE_HEIGHT; y++) {
+                            tile[f].getRow(0, y, row, 0, TILE_WIDTH);
+                            stitched[f].setRow(tileX * TILE_WIDTH, tileY * TILE_HEIGHT + y, row, 0, TILE_WIDTH);
+                        }
+                    }
+                }
+            }
+
+            String[] names = {"plasma", "perlin", "mixed"};
+            for (int f = 0; f < 3; f++) {
+                // The columns and rows on both sides of every tile border first, then everything
+                for (int x = TILE_WIDTH; x < width; x += TILE_WIDTH)
+                    for (int y = 0; y < height; y++) {
+                        assertSame(names[f] + " left of the border", whole[f], stitched[f], x - 1, y);
+                        assertSame(names[f] + " right of the border", whole[f], stitched[f], x, y);
+                    }
+                for (int y = TILE_HEIGHT; y < height; y += TILE_HEIGHT)
+                    for (int x = 0; x < width; x++) {
+                        assertSame(names[f] + " above the border", whole[f], stitched[f], x, y - 1);
+                        assertSame(names[f] + " below the border", whole[f], stitched[f], x, y);
+                    }
+                for (int y = 0; y < height; y++)
+                    for (int x = 0; x < width; x++)
+                        assertSame(names[f], whole[f], stitched[f], x, y);
+            }
+        }
+    }
+
+    @Test
+    public void threadCountDoesNotChangeTheResult() {
+        int width = TILES_X * TILE_WIDTH + 17, height = TILES_Y * TILE_HEIGHT + 5;
+        Field[] expected = null;
+
+        for (int threads : new int[]{1, 2, 4, 7}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                GenerationEngine engine = new GenerationEngine(pool, new PlasmaGenerator(42, TILE_WIDTH, TILE_HEIGHT, 1),
+                        new PerlinNoise3D(42, 3, PerlinNoise3D.DEFAULT_LACUNARITY, PerlinNoise3D.DEFAULT_PERSISTENCE));
+                Field[] fields = {Field.onHeap(width, height), Field.onHeap(width, height), Field.onHeap(width, height)};
+                engine.generate(fields[0], fields[1], fields[2]);
+
+                if (expected == null) {
+                    expected = fields;
+                    continue;
+                }
+                for (int f = 0; f < 3; f++)
+                    for (int y = 0; y < height; y++)
+                        for (int x = 0; x < width; x++)
+                            assertSame(threads + " threads, field " + f, expected[f], fields[f], x, y);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static void assertSame(String what, Field expected, Field actual, int x, int y) {
+        assertEquals(what + " at " + x + "," + y, Float.floatToIntBits(expected.get(x, y)), Float.floatToIntBits(actual.get(x, y)));
+    }
+}
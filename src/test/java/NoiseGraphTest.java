@@ -0,0 +1,153 @@
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the fused row evaluation of NoiseGraph gives the same values as evaluating the
+ * graph node by node into full-size fields, and that the recipe in its javadoc reproduces the
+ * mixed field of the GenerationEngine.
+ */
+public class NoiseGraphTest {
+
+    private static final int WIDTH = 97, HEIGHT = 13, X0 = -20, Y0 = 7;
+
+    private static final NoiseSource SIMPLEX = new SimplexNoise(3, 4, SimplexNoise.DEFAULT_LACUNARITY, SimplexNoise.DEFAULT_PERSISTENCE);
+    private static final NoiseSource VALUE = new ValueNoise(4, 3, ValueNoise.DEFAULT_LACUNARITY, ValueNoise.DEFAULT_PERSISTENCE);
+
+    @Test
+    public void fusedRowsMatchNodeByNode() {
+        Field plasma = Field.onHeap(64, 32);
+        new PlasmaGenerator(9, 64, 32, 1).calcPlasma(plasma);
+
+        // The field starts right of X0, so the edge clamping of the field node is used too
+        NoiseGraph a = NoiseGraph.source(SIMPLEX, 0.02);
+        NoiseGraph b = NoiseGraph.source(VALUE, 0.05).translate(3.5, -2);
+        NoiseGraph p = NoiseGraph.field(plasma, 0, 0);
+        NoiseGraph c = NoiseGraph.constant(0.25);
+
+        NoiseGraph faded = a.scale(0.5).bias(0.5).clamp(0, 1).fade();
+        NoiseGraph fused = NoiseGraph.blend(faded, b, p).multiply(a.add(c))
+                .add(NoiseGraph.select(a, b, p, 0.5, 0.1));
+
+        // Every node on its own, reading the full fields of its inputs
+        Field fa = fill(a), fb = fill(b), fp = fill(p);
+        Field fFaded = fill(read(fill(read(fill(read(fill(read(fa).scale(0.5))).bias(0.5))).clamp(0, 1))).fade());
+        Field fBlend = fill(NoiseGraph.blend(read(fFaded), read(fb), read(fp)));
+        Field fSum = fill(read(fa).add(NoiseGraph.constant(0.25)));
+        Field fProduct = fill(read(fBlend).multiply(read(fSum)));
+        Field fSelect = fill(NoiseGraph.select(read(fa), read(fb), read(fp), 0.5, 0.1));
+        Field expected = fill(read(fProduct).add(read(fSelect)));
+
+        assertSameField("fused", expected, fill(fused));
+    }
+
+    @Test
+    public void warpsMatchSingleSamples() {
+        NoiseGraph input = NoiseGraph.source(SIMPLEX, 0.03);
+        NoiseGraph dx = NoiseGraph.source(VALUE, 0.04), dy = NoiseGraph.source(VALUE, 0.04).translate(100, 0);
+        NoiseGraph warped = input.warp(dx, dy, 6);
+        NoiseGraph turbulent = warped.add(NoiseGraph.constant(1)).turbulence(SIMPLEX, 0.05, 3);
+
+        Field rows = fill(warped), turbulentRows = fill(turbulent);
+
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                double px = X0 + x, py = Y0 + y;
+                float expected = input.sample(px + 6 * (double) dx.sample(px, py), py + 6 * (double) dy.sample(px, py));
+
+                assertEquals("warp at " + x + "," + y, Float.floatToIntBits(expected), Float.floatToIntBits(rows.get(x, y)));
+                assertEquals("warp sample at " + x + "," + y, Float.floatToIntBits(expected), Float.floatToIntBits(warped.sample(px, py)));
+                assertEquals("turbulence at " + x + "," + y,
+                        Float.floatToIntBits(turbulent.sample(px, py)), Float.floatToIntBits(turbulentRows.get(x, y)));
+            }
+        }
+    }
+
+    @Test
+    public void sharedNodesAreEvaluatedOncePerRow() {
+        CountingSource counting = new CountingSource(SIMPLEX);
+        NoiseGraph a = NoiseGraph.source(counting, 0.02);
+
+        fill(a.multiply(a).add(a.scale(2)).add(NoiseGraph.blend(a, a, a)));
+        assertEquals(HEIGHT, counting.regions);
+        assertEquals(0, counting.samples);
+    }
+
+    @Test
+    public void recipeReproducesTheMixedField() {
+        int width = 256, height = 64;
+        PerlinNoise3D perlin = new PerlinNoise3D(42, 5, PerlinNoise3D.DEFAULT_LACUNARITY, PerlinNoise3D.DEFAULT_PERSISTENCE);
+        Field plasma = Field.onHeap(width, height), perlinField = Field.onHeap(width, height), mixed = Field.onHeap(width, height);
+        new GenerationEngine(ForkJoinPool.commonPool(), new PlasmaGenerator(42, 256, 32, 1), perlin)
+                .generate(plasma, perlinField, mixed);
+
+        // The recipe of the NoiseGraph javadoc
+        NoiseGraph p = NoiseGraph.field(plasma, 0, 0);
+        NoiseGraph noise = NoiseGraph.source(new PerlinNoise(perlin), GenerationEngine.PERLIN_SCALE).bias(1).scale(0.5).clamp(0, 1);
+        NoiseGraph n = noise.fade().bias(-0.5).scale(2);
+        NoiseGraph c = p.multiply(n).multiply(p.bias(1)).add(p).scale(1 / 2.5).bias(1).scale(0.5).clamp(0, 1);
+
+        Field graphPerlin = Field.onHeap(width, height), graphMixed = Field.onHeap(width, height);
+        noise.fill(graphPerlin, 0, 0);
+        c.add(p).scale(0.5).fill(graphMixed, 0, 0);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals("perlin at " + x + "," + y,
+                        Float.floatToIntBits(perlinField.get(x, y)), Float.floatToIntBits(graphPerlin.get(x, y)));
+                // Multiplying by 1 / 2.5 instead of dividing rounds differently
+                assertEquals("mixed at " + x + "," + y, mixed.get(x, y), graphMixed.get(x, y), 1e-6);
+            }
+        }
+    }
+
+    private static Field fill(NoiseGraph graph) {
+        Field field = Field.onHeap(WIDTH, HEIGHT);
+        graph.fill(field, X0, Y0);
+        return field;
+    }
+
+    //A node reading a field filled by fill
+    private static NoiseGraph read(Field field) {
+        return NoiseGraph.field(field, X0, Y0);
+    }
+
+    private static void assertSameField(String what, Field expected, Field actual) {
+        for (int y = 0; y < expected.getHeight(); y++)
+            for (int x = 0; x < expected.getWidth(); x++)
+                assertEquals(what + " at " + x + "," + y,
+                        Float.floatToIntBits(expected.get(x, y)), Float.floatToIntBits(actual.get(x, y)));
+    }
+
+    //Counts the calls of the 3d methods, which the source nodes use
+    private static final class CountingSource implements NoiseSource {
+
+        private final NoiseSource _source;
+        int regions;
+        int samples;
+
+        CountingSource(NoiseSource source) {
+            _source = source;
+        }
+
+        public double sample2d(double x, double y) {
+            return _source.sample2d(x, y);
+        }
+
+        public double sample3d(double x, double y, double z) {
+            samples++;
+            return _source.sample3d(x, y, z);
+        }
+
+        public void sample2dRegion(double x0, double y0, double step, int sizeX, int sizeY, float[] dest) {
+            _source.sample2dRegion(x0, y0, step, sizeX, sizeY, dest);
+        }
+
+        public void sample3dRegion(double x0, double y0, double z0, double step, int sizeX, int sizeY, int sizeZ, float[] dest) {
+            regions++;
+            _source.sample3dRegion(x0, y0, z0, step, sizeX, sizeY, sizeZ, dest);
+        }
+    }
+}
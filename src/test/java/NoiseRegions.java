@@ -0,0 +1,134 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The region cases of VectorRegionTest: every region method with 1, 5 and 9 octaves, with and
+ * without periodic axes, at a spacing below and above the lattice cell and with rows that do not
+ * fill the last vector. Run as a program it writes the lanes of the vector kernels and the
+ * values of all regions to stdout, so a second JVM can compute them on the other path.
+ */
+class NoiseRegions {
+
+    static final double LACUNARITY = 2.1379201;
+    static final double PERSISTENCE = 0.836281;
+
+    static final int SIZE_X = 67;
+    static final int SIZE_Y = 5;
+    static final int SIZE_Z = 3;
+
+    static final double X0 = -13.37, Y0 = 4.2, Z0 = -0.5;
+    static final double[] STEPS = {0.013, 0.173};
+
+    /**
+     * A region method and the per-sample function its values must equal bit for bit.
+     */
+    abstract static class Case {
+
+        final String name;
+        final int sizeZ;
+
+        Case(String name, int sizeZ) {
+            this.name = name;
+            this.sizeZ = sizeZ;
+        }
+
+        int size() {
+            return SIZE_X * SIZE_Y * sizeZ;
+        }
+
+        abstract void region(float[] dest);
+
+        abstract float sample(int i, int j, int k);
+    }
+
+    static List<Case> cases() {
+        List<Case> cases = new ArrayList<Case>();
+
+        for (int octaves = 1; octaves <= 9; octaves += 4) {
+            for (boolean periodic : new boolean[]{false, true}) {
+                final PerlinNoise3D noise3d = periodic ? new PerlinNoise3D(42, octaves, LACUNARITY, PERSISTENCE, 8, 0, 6)
+                        : new PerlinNoise3D(42, octaves, LACUNARITY, PERSISTENCE);
+                final PerlinNoise2D noise2d = periodic ? new PerlinNoise2D(42, octaves, LACUNARITY, PERSISTENCE, 8, 6)
+                        : new PerlinNoise2D(42, octaves, LACUNARITY, PERSISTENCE);
+
+                for (final double step : STEPS) {
+                    final float fx0 = (float) X0, fy0 = (float) Y0, fz0 = (float) Z0, fstep = (float) step;
+                    String suffix = " octaves=" + octaves + (periodic ? " periodic" : "") + " step=" + step;
+
+                    cases.add(new Case("fBm2dRegion" + suffix, 1) {
+                        void region(float[] dest) {
+                            noise2d.fBm2dRegion(X0, Y0, step, SIZE_X, SIZE_Y, dest);
+                        }
+
+                        float sample(int i, int j, int k) {
+                            return (float) noise2d.fBm2d(X0 + i * step, Y0 + j * step);
+                        }
+                    });
+                    cases.add(new Case("fBm2dLodRegion" + suffix, 1) {
+                        void region(float[] dest) {
+                            noise2d.fBm2dLodRegion(X0, Y0, step, SIZE_X, SIZE_Y, dest);
+                        }
+
+                        float sample(int i, int j, int k) {
+                            return (float) noise2d.fBm2dLod(X0 + i * step, Y0 + j * step, step);
+                        }
+                    });
+                    cases.add(new Case("fBm2fRegion" + suffix, 1) {
+                        void region(float[] dest) {
+                            noise2d.fBm2fRegion(fx0, fy0, fstep, SIZE_X, SIZE_Y, dest);
+                        }
+
+                        float sample(int i, int j, int k) {
+                            return noise2d.fBm2f(fx0 + i * fstep, fy0 + j * fstep);
+                        }
+                    });
+                    cases.add(new Case("fBm3dRegion" + suffix, SIZE_Z) {
+                        void region(float[] dest) {
+                            noise3d.fBm3dRegion(X0, Y0, Z0, step, SIZE_X, SIZE_Y, SIZE_Z, dest);
+                        }
+
+                        float sample(int i, int j, int k) {
+                            return (float) noise3d.fBm3d(X0 + i * step, Y0 + j * step, Z0 + k * step);
+                        }
+                    });
+                    cases.add(new Case("fBm3dLodRegion" + suffix, SIZE_Z) {
+                        void region(float[] dest) {
+                            noise3d.fBm3dLodRegion(X0, Y0, Z0, step, SIZE_X, SIZE_Y, SIZE_Z, dest);
+                        }
+
+                        float sample(int i, int j, int k) {
+                            return (float) noise3d.fBm3dLod(X0 + i * step, Y0 + j * step, Z0 + k * step, step);
+                        }
+                    });
+                    cases.add(new Case("fBm3fRegion" + suffix, SIZE_Z) {
+                        void region(float[] dest) {
+                            noise3d.fBm3fRegion(fx0, fy0, fz0, fstep, SIZE_X, SIZE_Y, SIZE_Z, dest);
+                        }
+
+                        float sample(int i, int j, int k) {
+                            return noise3d.fBm3f(fx0 + i * fstep, fy0 + j * fstep, fz0 + k * fstep);
+                        }
+                    });
+                }
+            }
+        }
+        return cases;
+    }
+
+    public static void main(String[] args) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(System.out));
+        out.writeInt(NoiseKernels.getVectorLanes());
+
+        for (Case c : cases()) {
+            float[] region = new float[c.size()];
+            c.region(region);
+
+            for (float value : region)
+                out.writeInt(Float.floatToRawIntBits(value));
+        }
+        out.flush();
+    }
+}
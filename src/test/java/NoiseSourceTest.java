@@ -0,0 +1,146 @@
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks every NoiseSource against the ranges stated in the NoiseSource javadoc and its
+ * implementations, and that the region methods return the single sample values.
+ */
+public class NoiseSourceTest {
+
+    private static final double LACUNARITY = 2.1379201, PERSISTENCE = 0.836281;
+
+    // "Roughly in [-1;1]" leaves this much room
+    private static final double SLACK = 0.05;
+
+    @Test
+    public void octavesStayInTheirRange() {
+        for (int seed : new int[]{1, 42}) {
+            // Per source the range of an octave in 2d and in 3d
+            assertRange(new SimplexNoise(seed, 1, LACUNARITY, PERSISTENCE), -1, 1, -1, 1);
+            assertRange(new ValueNoise(seed, 1, LACUNARITY, PERSISTENCE), -1, 1, -1, 1);
+            assertRange(new WorleyNoise(seed, 1, LACUNARITY, PERSISTENCE), -1, 1.45, -1, 1.45);
+            assertRange(new PerlinNoise(seed, 1, LACUNARITY, PERSISTENCE), -2, 2, -1, 1);
+        }
+    }
+
+    @Test
+    public void normalisedSumsStayInTheOctaveRange() {
+        double weights = 0;
+        for (int i = 0; i < 9; i++)
+            weights += Math.pow(LACUNARITY, -PERSISTENCE * i);
+
+        assertRange(new ScaledSource(new SimplexNoise(7, 9, LACUNARITY, PERSISTENCE), weights), -1, 1, -1, 1);
+        assertRange(new ScaledSource(new ValueNoise(7, 9, LACUNARITY, PERSISTENCE), weights), -1, 1, -1, 1);
+        assertRange(new ScaledSource(new WorleyNoise(7, 9, LACUNARITY, PERSISTENCE), weights), -1, 1.45, -1, 1.45);
+        assertRange(new ScaledSource(new PerlinNoise(7, 9, LACUNARITY, PERSISTENCE), weights), -2, 2, -1, 1);
+    }
+
+    @Test
+    public void worleyStaysBelowTheCellDiagonal() {
+        WorleyNoise noise = new WorleyNoise(3, 1, LACUNARITY, PERSISTENCE);
+        Random random = new Random(3);
+
+        for (int n = 0; n < 20000; n++) {
+            double x = random.nextDouble() * 512 - 256, y = random.nextDouble() * 512 - 256, z = random.nextDouble() * 512 - 256;
+            assertTrue(noise.noise2d(x, y) <= 2 * Math.sqrt(2) - 1);
+            assertTrue(noise.noise3d(x, y, z) <= 2 * Math.sqrt(3) - 1);
+        }
+    }
+
+    @Test
+    public void regionsMatchSingleSamples() {
+        NoiseSource[] sources = {
+                new SimplexNoise(5, 4, LACUNARITY, PERSISTENCE),
+                new ValueNoise(5, 4, LACUNARITY, PERSISTENCE),
+                new WorleyNoise(5, 2, LACUNARITY, PERSISTENCE),
+                new PerlinNoise(5, 4, LACUNARITY, PERSISTENCE),
+                new PerlinNoise(new PerlinNoise3D(5, 4, LACUNARITY, PERSISTENCE, 8, 0, 4))
+        };
+        int sizeX = 37, sizeY = 5, sizeZ = 3;
+        double x0 = -13.37, y0 = 4.2, z0 = -0.5;
+
+        for (NoiseSource source : sources) {
+            String name = source.getClass().getSimpleName();
+
+            for (double step : new double[]{0.013, 0.173}) {
+                float[] region = new float[sizeX * sizeY * sizeZ];
+
+                source.sample2dRegion(x0, y0, step, sizeX, sizeY, region);
+                for (int j = 0, n = 0; j < sizeY; j++)
+                    for (int i = 0; i < sizeX; i++, n++)
+                        assertEquals(name + " 2d at " + i + "," + j,
+                                Float.floatToIntBits((float) source.sample2d(x0 + i * step, y0 + j * step)),
+                                Float.floatToIntBits(region[n]));
+
+                source.sample3dRegion(x0, y0, z0, step, sizeX, sizeY, sizeZ, region);
+                for (int k = 0, n = 0; k < sizeZ; k++)
+                    for (int j = 0; j < sizeY; j++)
+                        for (int i = 0; i < sizeX; i++, n++)
+                            assertEquals(name + " 3d at " + i + "," + j + "," + k,
+                                    Float.floatToIntBits((float) source.sample3d(x0 + i * step, y0 + j * step, z0 + k * step)),
+                                    Float.floatToIntBits(region[n]));
+            }
+        }
+    }
+
+    private static void assertRange(NoiseSource source, double lower2d, double upper2d, double lower3d, double upper3d) {
+        Random random = new Random(11);
+        double min2d = Double.MAX_VALUE, max2d = -Double.MAX_VALUE, min3d = Double.MAX_VALUE, max3d = -Double.MAX_VALUE;
+
+        for (int n = 0; n < 100000; n++) {
+            double x = random.nextDouble() * 512 - 256, y = random.nextDouble() * 512 - 256, z = random.nextDouble() * 512 - 256;
+            double value2d = source.sample2d(x, y), value3d = source.sample3d(x, y, z);
+
+            min2d = Math.min(min2d, value2d);
+            max2d = Math.max(max2d, value2d);
+            min3d = Math.min(min3d, value3d);
+            max3d = Math.max(max3d, value3d);
+        }
+
+        String name = source.toString();
+        assertTrue(name + " 2d minimum " + min2d, min2d >= lower2d - SLACK);
+        assertTrue(name + " 2d maximum " + max2d, max2d <= upper2d + SLACK);
+        assertTrue(name + " 3d minimum " + min3d, min3d >= lower3d - SLACK);
+        assertTrue(name + " 3d maximum " + max3d, max3d <= upper3d + SLACK);
+
+        // Not squeezed into a small part of the range either
+        assertTrue(name + " 2d spread", max2d - min2d > (upper2d - lower2d) / 4);
+        assertTrue(name + " 3d spread", max3d - min3d > (upper3d - lower3d) / 4);
+    }
+
+    //The fBm of a source divided by the sum of its spectral weights
+    private static final class ScaledSource implements NoiseSource {
+
+        private final NoiseSource _source;
+        private final double _weights;
+
+        ScaledSource(NoiseSource source, double weights) {
+            _source = source;
+            _weights = weights;
+        }
+
+        public double sample2d(double x, double y) {
+            return _source.sample2d(x, y) / _weights;
+        }
+
+        public double sample3d(double x, double y, double z) {
+            return _source.sample3d(x, y, z) / _weights;
+        }
+
+        public void sample2dRegion(double x0, double y0, double step, int sizeX, int sizeY, float[] dest) {
+            throw new UnsupportedOperationException();
+        }
+
+        public void sample3dRegion(double x0, double y0, double z0, double step, int sizeX, int sizeY, int sizeZ, float[] dest) {
+            throw new UnsupportedOperationException();
+        }
+
+        public String toString() {
+            return "normalised " + _source.getClass().getSimpleName();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that periodic noise and plasma repeat after their period along every axis, also for
+ * negative coordinates, and that periods which do not fit the lattice are rejected. Shifting a
+ * coordinate by a period that is not a power of two rounds, so the noise is compared with a
+ * tolerance; the plasma hashes wrapped integer positions and must repeat exactly.
+ */
+public class PeriodicNoiseTest {
+
+    private static final double[] PERIODS = {8, 5.5, 3};
+
+    @Test
+    public void noise3dRepeatsAlongEveryAxis() {
+        for (int octaves : new int[]{1, 5}) {
+            PerlinNoise3D noise = new PerlinNoise3D(42, octaves, PerlinNoise3D.DEFAULT_LACUNARITY,
+                    PerlinNoise3D.DEFAULT_PERSISTENCE, PERIODS[0], PERIODS[1], PERIODS[2]);
+            Random random = new Random(1);
+
+            for (int n = 0; n < 2000; n++) {
+                double[] p = {random.nextDouble() * 200 - 100, random.nextDouble() * 200 - 100, random.nextDouble() * 200 - 100};
+                double value = noise.fBm3d(p[0], p[1], p[2]);
+                float valueFloat = noise.fBm3f((float) p[0], (float) p[1], (float) p[2]);
+
+                for (int axis = 0; axis < 3; axis++) {
+                    for (int k : new int[]{-3, -1, 1, 2}) {
+                        double[] q = p.clone();
+                        q[axis] += k * PERIODS[axis];
+
+                        assertEquals("fBm3d axis " + axis + " at " + p[0] + "," + p[1] + "," + p[2],
+                                value, noise.fBm3d(q[0], q[1], q[2]), 1e-9);
+                        assertEquals("fBm3f axis " + axis + " at " + p[0] + "," + p[1] + "," + p[2],
+                                valueFloat, noise.fBm3f((float) q[0], (float) q[1], (float) q[2]), 2e-3);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void noise2dRepeatsAlongEveryAxis() {
+        for (int octaves : new int[]{1, 5}) {
+            PerlinNoise2D noise = new PerlinNoise2D(42, octaves, PerlinNoise2D.DEFAULT_LACUNARITY,
+                    PerlinNoise2D.DEFAULT_PERSISTENCE, PERIODS[0], PERIODS[1]);
+            Random random = new Random(2);
+
+            for (int n = 0; n < 2000; n++) {
+                double x = random.nextDouble() * 200 - 100, y = random.nextDouble() * 200 - 100;
+                double value = noise.fBm2d(x, y);
+
+                for (int k : new int[]{-3, -1, 1, 2}) {
+                    assertEquals("fBm2d x at " + x + "," + y, value, noise.fBm2d(x + k * PERIODS[0], y), 1e-9);
+                    assertEquals("fBm2d y at " + x + "," + y, value, noise.fBm2d(x, y + k * PERIODS[1]), 1e-9);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void periodicPlasmaWraps() {
+        int tileWidth = 64, tileHeight = 16, periodX = 3 * tileWidth, periodY = 2 * tileHeight;
+        PlasmaGenerator plasma = new PlasmaGenerator(42, tileWidth, tileHeight, 1, periodX, periodY);
+
+        Field tile = Field.onHeap(tileWidth, tileHeight), shifted = Field.onHeap(tileWidth, tileHeight);
+
+        for (int tileY = -3; tileY <= 2; tileY++) {
+            for (int tileX = -4; tileX <= 3; tileX++) {
+                plasma.calcPlasmaTile(tile, tileX, tileY);
+
+                plasma.calcPlasmaTile(shifted, tileX + 3, tileY);
+                assertSameField("x shifted tile " + tileX + "," + tileY, tile, shifted);
+
+                plasma.calcPlasmaTile(shifted, tileX, tileY - 2);
+                assertSameField("y shifted tile " + tileX + "," + tileY, tile, shifted);
+            }
+        }
+    }
+
+    @Test
+    public void periodicFieldWrapsAtItsEdges() {
+        int tileWidth = 256, tileHeight = 32, periodX = 2 * tileWidth, periodY = 4 * tileHeight;
+        GenerationEngine engine = new GenerationEngine(ForkJoinPool.commonPool(),
+                new PlasmaGenerator(7, tileWidth, tileHeight, 1, periodX, periodY),
+                new PerlinNoise3D(7, 3, PerlinNoise3D.DEFAULT_LACUNARITY, PerlinNoise3D.DEFAULT_PERSISTENCE,
+                        periodX * GenerationEngine.PERLIN_SCALE, 0, periodY * GenerationEngine.PERLIN_SCALE));
+
+        // Two periods along each axis, the second one must repeat the first
+        Field plasma = Field.onHeap(2 * periodX, 2 * periodY);
+        Field perlin = Field.onHeap(2 * periodX, 2 * periodY);
+        Field mixed = Field.onHeap(2 * periodX, 2 * periodY);
+        engine.generate(plasma, perlin, mixed);
+
+        for (int y = 0; y < periodY; y++) {
+            for (int x = 0; x < periodX; x++) {
+                assertEquals(plasma.get(x, y), plasma.get(x + periodX, y), 0);
+                assertEquals(plasma.get(x, y), plasma.get(x, y + periodY), 0);
+                assertEquals(perlin.get(x, y), perlin.get(x + periodX, y), 1e-6);
+                assertEquals(perlin.get(x, y), perlin.get(x, y + periodY), 1e-6);
+                assertEquals(mixed.get(x, y), mixed.get(x + periodX, y + periodY), 1e-5);
+            }
+        }
+    }
+
+    @Test
+    public void periodsThatDoNotFitTheLatticeAreRejected() {
+        assertRejected(() -> PerlinNoise3D.checkPeriod(-1));
+        assertRejected(() -> PerlinNoise3D.checkPeriod(Double.NaN));
+        assertRejected(() -> PerlinNoise3D.checkPeriod(Double.POSITIVE_INFINITY));
+
+        // Less than half a cell of the first octave, and more cells than an int holds at the last
+        assertRejected(() -> new PerlinNoise3D(1, 3, 2, 0.8, 0.4, 0, 0));
+        assertRejected(() -> new PerlinNoise2D(1, 3, 2, 0.8, 0, 0.4));
+        assertRejected(() -> new PerlinNoise3D(1, 9, 2, 0.8, 0, 1e8, 0));
+
+        // Plasma periods must be whole tiles, and the Perlin periods must match them
+        assertRejected(() -> new PlasmaGenerator(1, 64, 16, 1, 100, 0));
+        assertRejected(() -> new PlasmaGenerator(1, 64, 16, 1, 0, -16));
+        assertRejected(() -> new GenerationEngine(ForkJoinPool.commonPool(), new PlasmaGenerator(1, 256, 32, 1, 512, 0),
+                new PerlinNoise3D(1, 3, 2, 0.8, 2, 0, 0)));
+    }
+
+    private static void assertSameField(String what, Field expected, Field actual) {
+        for (int y = 0; y < expected.getHeight(); y++)
+            for (int x = 0; x < expected.getWidth(); x++)
+                assertEquals(what + " at " + x + "," + y,
+                        Float.floatToIntBits(expected.get(x, y)), Float.floatToIntBits(actual.get(x, y)));
+    }
+
+    private static void assertRejected(Runnable create) {
+        try {
+            create.run();
+            fail("accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
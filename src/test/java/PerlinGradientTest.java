@@ -0,0 +1,204 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the analytic gradients of the Perlin noise against central differences and that the
+ * value returned with a gradient is the plain noise value bit for bit. The 2d noise jumps at the
+ * lattice lines of every octave, so where a central difference straddles one a one-sided
+ * difference that stays in the cell has to match instead.
+ */
+public class PerlinGradientTest {
+
+    private static final double LACUNARITY = PerlinNoise3D.DEFAULT_LACUNARITY, PERSISTENCE = PerlinNoise3D.DEFAULT_PERSISTENCE;
+
+    private static final double H = 1e-6;
+
+    // Both keep fewer than the 5 octaves of the test noises
+    private static final double[] STEPS = {0.1, 0.3};
+
+    private interface Value2d {
+        double at(double x, double y);
+    }
+
+    private interface Value3d {
+        double at(double x, double y, double z);
+    }
+
+    private interface Gradient2d {
+        double at(double x, double y, double[] gradient);
+    }
+
+    private interface Gradient3d {
+        double at(double x, double y, double z, double[] gradient);
+    }
+
+    @Test
+    public void valuesEqualThePlainNoise() {
+        for (PerlinNoise2D noise : noises2d())
+            for (double[] p : points(2)) {
+                double[] g = new double[2];
+                assertBits(noise.noise2d(p[0], p[1]), noise.noise2dGradient(p[0], p[1], g));
+                assertBits(noise.fBm2d(p[0], p[1]), noise.fBm2dGradient(p[0], p[1], g));
+                for (double step : STEPS)
+                    assertBits(noise.fBm2dLod(p[0], p[1], step), noise.fBm2dLodGradient(p[0], p[1], step, g));
+            }
+
+        for (PerlinNoise3D noise : noises3d())
+            for (double[] p : points(3)) {
+                double[] g = new double[3];
+                assertBits(noise.noise3d(p[0], p[1], p[2]), noise.noise3dGradient(p[0], p[1], p[2], g));
+                assertBits(noise.fBm3d(p[0], p[1], p[2]), noise.fBm3dGradient(p[0], p[1], p[2], g));
+                for (double step : STEPS)
+                    assertBits(noise.fBm3dLod(p[0], p[1], p[2], step), noise.fBm3dLodGradient(p[0], p[1], p[2], step, g));
+            }
+    }
+
+    @Test
+    public void gradients3dMatchCentralDifferences() {
+        for (PerlinNoise3D noise : noises3d()) {
+            List<double[]> points = points(3);
+
+            // The wrap of the periodic axes, where the lattice is stitched together
+            for (int k = -2; k <= 2; k++)
+                points.add(new double[]{k * noise.getPeriodX(), k * noise.getPeriodY() + 0.25, k * noise.getPeriodZ() - 0.5});
+
+            for (double[] p : points) {
+                assertGradient3d(noise::noise3d, noise::noise3dGradient, p);
+                assertGradient3d(noise::fBm3d, noise::fBm3dGradient, p);
+                for (double step : STEPS) {
+                    assertTrue(noise.getLodOctaves(step) < noise.getOctaves());
+                    assertGradient3d((x, y, z) -> noise.fBm3dLod(x, y, z, step),
+                            (x, y, z, g) -> noise.fBm3dLodGradient(x, y, z, step, g), p);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void gradients2dMatchDifferencesInsideTheCells() {
+        int checks = 0, oneSided = 0;
+
+        for (PerlinNoise2D noise : noises2d()) {
+            List<double[]> points = points(2);
+
+            // Every octave has a lattice line at the wrap, so the points lie just inside the cell
+            for (int k = -2; k <= 2; k++)
+                points.add(new double[]{k * noise.getPeriodX() + 1e-4, k * noise.getPeriodY() + 1e-4});
+
+            for (double[] p : points) {
+                List<Value2d> values = new ArrayList<Value2d>();
+                List<Gradient2d> gradients = new ArrayList<Gradient2d>();
+                values.add(noise::noise2d);
+                gradients.add(noise::noise2dGradient);
+                values.add(noise::fBm2d);
+                gradients.add(noise::fBm2dGradient);
+                for (double step : STEPS) {
+                    values.add((x, y) -> noise.fBm2dLod(x, y, step));
+                    gradients.add((x, y, g) -> noise.fBm2dLodGradient(x, y, step, g));
+                }
+
+                for (int i = 0; i < values.size(); i++) {
+                    checks += 2;
+                    oneSided += assertGradient2d(values.get(i), gradients.get(i), p);
+                }
+            }
+        }
+
+        // Only points within a few H of a lattice line need one
+        assertTrue(oneSided + " of " + checks + " checks one-sided", oneSided < checks / 20);
+    }
+
+    private static void assertGradient3d(Value3d value, Gradient3d gradient, double[] p) {
+        double[] g = new double[3];
+        gradient.at(p[0], p[1], p[2], g);
+
+        for (int axis = 0; axis < 3; axis++) {
+            double[] lo = p.clone(), hi = p.clone();
+            lo[axis] -= H;
+            hi[axis] += H;
+            double difference = (value.at(hi[0], hi[1], hi[2]) - value.at(lo[0], lo[1], lo[2])) / (hi[axis] - lo[axis]);
+
+            assertEquals("axis " + axis + " at " + p[0] + "," + p[1] + "," + p[2], difference, g[axis], tolerance(g[axis]));
+        }
+    }
+
+    //Returns the number of axes that needed a one-sided difference
+    private static int assertGradient2d(Value2d value, Gradient2d gradient, double[] p) {
+        double[] g = new double[2];
+        gradient.at(p[0], p[1], g);
+        int oneSided = 0;
+
+        for (int axis = 0; axis < 2; axis++) {
+            double[] f = new double[5];
+            for (int k = -2; k <= 2; k++) {
+                double[] q = p.clone();
+                q[axis] += k * H;
+                f[k + 2] = value.at(q[0], q[1]);
+            }
+
+            double central = (f[3] - f[1]) / (2 * H);
+            double forward = (-3 * f[2] + 4 * f[3] - f[4]) / (2 * H);
+            double backward = (3 * f[2] - 4 * f[1] + f[0]) / (2 * H);
+            double tolerance = tolerance(g[axis]);
+
+            if (Math.abs(central - g[axis]) <= tolerance)
+                continue;
+            oneSided++;
+            assertTrue("axis " + axis + " at " + p[0] + "," + p[1] + ": " + g[axis] + ", differences " + central + " "
+                    + forward + " " + backward, Math.abs(forward - g[axis]) <= tolerance || Math.abs(backward - g[axis]) <= tolerance);
+        }
+        return oneSided;
+    }
+
+    private static double tolerance(double gradient) {
+        return 1e-5 + 1e-6 * Math.abs(gradient);
+    }
+
+    private static void assertBits(double expected, double actual) {
+        assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(actual));
+    }
+
+    private static PerlinNoise2D[] noises2d() {
+        return new PerlinNoise2D[]{
+                new PerlinNoise2D(42, 5, LACUNARITY, PERSISTENCE),
+                new PerlinNoise2D(-7, 5, LACUNARITY, PERSISTENCE, 5.5, 3)
+        };
+    }
+
+    private static PerlinNoise3D[] noises3d() {
+        return new PerlinNoise3D[]{
+                new PerlinNoise3D(42, 5, LACUNARITY, PERSISTENCE),
+                new PerlinNoise3D(-7, 5, LACUNARITY, PERSISTENCE, 8, 5.5, 3)
+        };
+    }
+
+    //Random points, points on the lattice of the first octave and right beside it
+    private static List<double[]> points(int dimensions) {
+        List<double[]> points = new ArrayList<double[]>();
+        Random random = new Random(dimensions);
+
+        for (int n = 0; n < 2000; n++) {
+            double[] p = new double[dimensions];
+            for (int i = 0; i < dimensions; i++)
+                p[i] = random.nextDouble() * 600 - 300;
+            points.add(p);
+        }
+        for (double c : new double[]{0, 1, -1, 17, -256, 255.0 + 1e-9, Math.nextDown(3.0)}) {
+            double[] p = new double[dimensions];
+            for (int i = 0; i < dimensions; i++)
+                p[i] = c + i * 0.37;
+            points.add(p);
+
+            double[] axis = new double[dimensions];
+            axis[0] = c;
+            points.add(axis);
+        }
+        return points;
+    }
+}
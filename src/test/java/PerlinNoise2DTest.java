@@ -0,0 +1,112 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the allocation-free noise2d returns exactly the values of the original version,
+ * which allocated three arrays per lattice corner. The original is frozen below and reads the
+ * permutations of the generator under test, so the check does not depend on how they are seeded.
+ */
+public class PerlinNoise2DTest {
+
+    private static final int[] SEEDS = {0, 1, -1, 42, 214759, Integer.MIN_VALUE, Integer.MAX_VALUE};
+
+    // Lattice lines, values just beside them, negative positions and the wrap at 256
+    private static final double[] COORDINATES = {
+            0, 1, -1, 0.5, -0.5, 1e-9, -1e-9, Math.nextDown(1.0), Math.nextUp(-1.0),
+            3.25, -3.75, 17.0001, -17.0001, 255, 255.5, 256, -256, 256.3, -256.3, 511.99, 1000.125, -12345.678
+    };
+
+    @Test
+    public void noise2dMatchesAllocatingVersion() {
+        for (int seed : SEEDS) {
+            PerlinNoise2D noise = new PerlinNoise2D(seed);
+            FrozenNoise2D frozen = new FrozenNoise2D(noise._noisePermutations);
+
+            for (double x : COORDINATES)
+                for (double y : COORDINATES)
+                    assertBitsEqual(seed, x, y, frozen.noise2d(x, y), noise.noise2d(x, y));
+
+            for (int i = -300; i <= 300; i++) {
+                double x = i * 0.37, y = 0.5 - i * 0.29;
+                assertBitsEqual(seed, x, y, frozen.noise2d(x, y), noise.noise2d(x, y));
+            }
+        }
+    }
+
+    private static void assertBitsEqual(int seed, double x, double y, double expected, double actual) {
+        assertEquals("seed " + seed + " at (" + x + ", " + y + ")",
+                Double.doubleToLongBits(expected), Double.doubleToLongBits(actual));
+    }
+
+    /**
+     * noise2d, grad2d and hash as they were before noise2d became allocation-free.
+     */
+    private static final class FrozenNoise2D {
+
+        private final int[] _noisePermutations;
+
+        FrozenNoise2D(int[] noisePermutations) {
+            _noisePermutations = noisePermutations;
+        }
+
+        private static double fastFloor(double d) {
+            int i = (int) d;
+            return (d < 0 && d != i) ? i - 1 : i;
+        }
+
+        private static double fade(double t) {
+            return t * t * t * (t * (t * 6 - 15) + 10);
+        }
+
+        private static double lerp(double t, double a, double b) {
+            return a + t * (b - a);
+        }
+
+        double noise2d(double x, double y) {
+            int X = (int) fastFloor(x) & 255, Y = (int) fastFloor(y) & 255;
+
+            x -= fastFloor(x);
+            y -= fastFloor(y);
+
+            double u = fade(x), v = fade(y);
+
+            double[] g00 = grad2d(X, Y);
+            double[] g01 = grad2d(X + 1, Y);
+            double[] g10 = grad2d(X, Y + 1);
+            double[] g11 = grad2d(X + 1, Y + 1);
+
+            double w00 = g00[0] * x + g00[1] * y;
+            double w01 = g01[0] * x + g01[1] * y;
+            double w10 = g10[0] * x + g10[1] * y;
+            double w11 = g11[0] * x + g11[1] * y;
+
+            double w0 = lerp(u, w00, w01);
+            double w1 = lerp(u, w10, w11);
+
+            return lerp(v, w0, w1);
+        }
+
+        private double[] grad2d(int x, int y) {
+            double[] h = hash(x, y);
+            double[] result = new double[2];
+            result[0] = 2 * h[0] - 1;
+            result[1] = 2 * h[1] - 1;
+            return result;
+        }
+
+        private int h8(int u, int v) {
+            u = u & 0xFF;
+            v = v & 0xFF;
+            return _noisePermutations[_noisePermutations[u] + v];
+        }
+
+        private double[] hash(int u, int v) {
+            final int M = 0x3F;
+            int h = h8(u, v);
+            double hx = h & M;
+            double hy = (h >> 2) & M;
+            return new double[]{hx / M, hy / M};
+        }
+    }
+}
@@ -0,0 +1,99 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PlasmaGeneratorTest {
+
+    private static final int[] SEEDS = {0, 42, -7, 214759};
+
+    // Power of two tiles with width >= height, which take the iterative level-by-level path
+    private static final int[][] TILES = {{1, 1}, {8, 8}, {16, 4}, {64, 16}, {256, 32}, {1024, 128}};
+
+    @Test
+    public void iterativePathMatchesRecursion() {
+        for (int seed : SEEDS)
+            for (int[] tile : TILES)
+                for (float strength : new float[]{1, 0.5f})
+                    assertTilesMatchRecursion(new PlasmaGenerator(seed, tile[0], tile[1], strength), 0, 0);
+    }
+
+    @Test
+    public void iterativePathMatchesRecursionWhenPeriodic() {
+        for (int seed : SEEDS)
+            for (int[] tile : TILES)
+                assertTilesMatchRecursion(new PlasmaGenerator(seed, tile[0], tile[1], 1, 2 * tile[0], 3 * tile[1]),
+                        2 * tile[0], 3 * tile[1]);
+    }
+
+    @Test
+    public void tilesDependOnlyOnPositionAndSeed() {
+        int w = 64, h = 16, tilesX = 4, tilesY = 4;
+        PlasmaGenerator generator = new PlasmaGenerator(42, w, h, 1), other = new PlasmaGenerator(43, w, h, 1);
+
+        Field whole = Field.onHeap(tilesX * w, tilesY * h);
+        generator.calcPlasma(whole);
+
+        List<int[]> tiles = new ArrayList<int[]>();
+        for (int tileY = 0; tileY < tilesY; tileY++)
+            for (int tileX = 0; tileX < tilesX; tileX++)
+                tiles.add(new int[]{tileX, tileY});
+        Collections.shuffle(tiles, new Random(1));
+
+        // Tiles in a random order, with another seed drawn on the same thread in between
+        Field tile = Field.onHeap(w, h), scratch = Field.onHeap(w, h);
+        for (int[] t : tiles) {
+            other.calcPlasmaTile(scratch, t[1], t[0]);
+            generator.calcPlasmaTile(tile, t[0], t[1]);
+
+            for (int y = 0; y < h; y++)
+                for (int x = 0; x < w; x++)
+                    assertEquals("tile " + t[0] + "," + t[1] + " at " + x + "," + y,
+                            Float.floatToIntBits(whole.get(t[0] * w + x, t[1] * h + y)), Float.floatToIntBits(tile.get(x, y)));
+        }
+
+        // The other seed gives another plasma
+        other.calcPlasmaTile(scratch, 0, 0);
+        generator.calcPlasmaTile(tile, 0, 0);
+        int same = 0;
+        for (int y = 0; y < h; y++)
+            for (int x = 0; x < w; x++)
+                if (scratch.get(x, y) == tile.get(x, y))
+                    same++;
+        assertTrue(same < w * h / 100);
+    }
+
+    private static void assertTilesMatchRecursion(PlasmaGenerator generator, int periodX, int periodY) {
+        int w = generator.getTileWidth(), h = generator.getTileHeight();
+        int[][] tiles = {{0, 0}, {1, 0}, {2, 3}};
+
+        // DivideGrid draws at the plane position, so the plane field covers all tested tiles
+        Field plane = Field.onHeap(3 * w, 4 * h);
+        Field tile = Field.onHeap(w, h);
+
+        for (int[] t : tiles) {
+            int x0 = t[0] * w, y0 = t[1] * h;
+            int seed = generator.getSeed();
+
+            generator.DivideGrid(plane, x0, y0, w, h,
+                    corner(x0, y0, periodX, periodY, seed), corner(x0 + w, y0, periodX, periodY, seed),
+                    corner(x0 + w, y0 + h, periodX, periodY, seed), corner(x0, y0 + h, periodX, periodY, seed));
+            generator.calcPlasmaTile(tile, t[0], t[1]);
+
+            for (int y = 0; y < h; y++)
+                for (int x = 0; x < w; x++)
+                    assertEquals("seed " + seed + ", " + w + "x" + h + " tile " + t[0] + "," + t[1] + " at " + x + "," + y,
+                            Float.floatToIntBits(plane.get(x0 + x, y0 + y)), Float.floatToIntBits(tile.get(x, y)));
+        }
+    }
+
+    //The corner value PlasmaGenerator draws from the hash of the wrapped position
+    private static float corner(int x, int y, int periodX, int periodY, int seed) {
+        return CoordinateHash.unit(periodX == 0 ? x : Math.floorMod(x, periodX), periodY == 0 ? y : Math.floorMod(y, periodY), 0, seed);
+    }
+}
@@ -0,0 +1,182 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the crash recovery of TileStore: only an interrupted last append is cut off when the
+ * file is opened again, damage anywhere else costs only the damaged tile.
+ */
+public class TileStoreTest {
+
+    private static final int TILE_WIDTH = 32, TILE_HEIGHT = 8, TILES = 4;
+    private static final long RECORD_BYTES = TileStore.RECORD_HEADER_BYTES + 3L * 4 * TILE_WIDTH * TILE_HEIGHT;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void reopenKeepsTheTiles() throws IOException {
+        File file = filledStore();
+
+        TileStore store = open(file);
+        try {
+            assertEquals(TILES, store.size());
+            for (int i = 0; i < TILES; i++)
+                assertTileMatches(store, store.get(i, 0));
+        } finally {
+            store.close();
+        }
+        assertEquals(offset(TILES), file.length());
+    }
+
+    @Test
+    public void tornTailIsCutOff() throws IOException {
+        File file = filledStore();
+
+        // Half of a fifth record, as if the process died while appending it
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(offset(TILES) + RECORD_BYTES / 2);
+        }
+
+        TileStore store = open(file);
+        try {
+            assertEquals(TILES, store.size());
+            for (int i = 0; i < TILES; i++)
+                assertTileMatches(store, store.get(i, 0));
+        } finally {
+            store.close();
+        }
+        assertEquals(offset(TILES), file.length());
+    }
+
+    @Test
+    public void damagedLastRecordIsCutOff() throws IOException {
+        File file = filledStore();
+
+        // The file grew to the full record, but not all of its payload reached the disk
+        flipByte(file, offset(TILES - 1) + RECORD_BYTES - 3);
+
+        TileStore store = open(file);
+        try {
+            assertEquals(TILES - 1, store.size());
+            assertFalse(store.contains(TILES - 1, 0));
+            for (int i = 0; i < TILES - 1; i++)
+                assertTileMatches(store, store.get(i, 0));
+
+            // The lost tile is generated again and appended where the damaged one was
+            assertTileMatches(store, store.getOrGenerate(TILES - 1, 0));
+        } finally {
+            store.close();
+        }
+        assertEquals(offset(TILES), file.length());
+    }
+
+    @Test
+    public void damagedPayloadIsGeneratedAgain() throws IOException {
+        File file = filledStore();
+        flipByte(file, offset(1) + TileStore.RECORD_HEADER_BYTES + 100);
+
+        TileStore store = open(file);
+        try {
+            // The header is fine, so the damage is only found on the first read
+            assertEquals(TILES, store.size());
+            assertNull(store.get(1, 0));
+            assertFalse(store.contains(1, 0));
+
+            assertTileMatches(store, store.getOrGenerate(1, 0));
+            for (int i = 0; i < TILES; i++)
+                assertTileMatches(store, store.get(i, 0));
+        } finally {
+            store.close();
+        }
+        assertEquals(offset(TILES + 1), file.length());
+
+        TileStore reopened = open(file);
+        try {
+            assertTileMatches(reopened, reopened.get(1, 0));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void damagedHeaderInTheMiddleKeepsTheRecordsAfterIt() throws IOException {
+        File file = filledStore();
+        flipByte(file, offset(1));
+
+        TileStore store = open(file);
+        try {
+            assertEquals(TILES - 1, store.size());
+            assertFalse(store.contains(1, 0));
+            for (int i = 0; i < TILES; i++)
+                if (i != 1)
+                    assertTileMatches(store, store.get(i, 0));
+        } finally {
+            store.close();
+        }
+        assertEquals(offset(TILES), file.length());
+    }
+
+    //A store with the tiles (0, 0) to (TILES - 1, 0), closed again
+    private File filledStore() throws IOException {
+        File file = new File(folder.getRoot(), "region.tiles");
+        TileStore store = open(file);
+        try {
+            for (int i = 0; i < TILES; i++)
+                assertNotNull(store.getOrGenerate(i, 0));
+        } finally {
+            store.close();
+        }
+        assertEquals(offset(TILES), file.length());
+        return file;
+    }
+
+    private static TileStore open(File file) throws IOException {
+        return new TileStore(file, new PlasmaGenerator(42, TILE_WIDTH, TILE_HEIGHT, 1),
+                new PerlinNoise3D(42, 3, PerlinNoise3D.DEFAULT_LACUNARITY, PerlinNoise3D.DEFAULT_PERSISTENCE), false);
+    }
+
+    //Compares a stored tile with a freshly generated one
+    private static void assertTileMatches(TileStore store, TileStore.Tile tile) {
+        assertNotNull(tile);
+        assertTrue(store.contains(tile.tileX, tile.tileY));
+
+        Field plasma = Field.onHeap(TILE_WIDTH, TILE_HEIGHT), perlin = Field.onHeap(TILE_WIDTH, TILE_HEIGHT),
+                mixed = Field.onHeap(TILE_WIDTH, TILE_HEIGHT);
+        new GenerationEngine(ForkJoinPool.commonPool(),
+                new PlasmaGenerator(42, TILE_WIDTH, TILE_HEIGHT, 1),
+                new PerlinNoise3D(42, 3, PerlinNoise3D.DEFAULT_LACUNARITY, PerlinNoise3D.DEFAULT_PERSISTENCE), false)
+                .generateTile(tile.tileX, tile.tileY, plasma, perlin, mixed);
+
+        for (int y = 0; y < TILE_HEIGHT; y++)
+            for (int x = 0; x < TILE_WIDTH; x++) {
+                assertEquals(Float.floatToIntBits(plasma.get(x, y)), Float.floatToIntBits(tile.plasma.get(x, y)));
+                assertEquals(Float.floatToIntBits(perlin.get(x, y)), Float.floatToIntBits(tile.perlin.get(x, y)));
+                assertEquals(Float.floatToIntBits(mixed.get(x, y)), Float.floatToIntBits(tile.mixed.get(x, y)));
+            }
+    }
+
+    private static void flipByte(File file, long position) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(position);
+            int b = raf.read();
+            raf.seek(position);
+            raf.write(b ^ 0x10);
+        }
+    }
+
+    private static long offset(int record) {
+        return TileStore.HEADER_BYTES + record * RECORD_BYTES;
+    }
+}
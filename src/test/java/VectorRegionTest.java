@@ -0,0 +1,69 @@
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that the region methods return exactly the per-sample fBm values and that the vector
+ * kernels return exactly the values of the scalar kernels. The test JVM runs with
+ * "--add-modules jdk.incubator.vector", so the regions use the vector kernels where the hardware
+ * has them; the scalar path runs in a second JVM started with -Dplasma.vector=false, since the
+ * kernels are chosen once per JVM.
+ */
+public class VectorRegionTest {
+
+    @Test
+    public void regionsMatchPerSampleFunctions() {
+        for (NoiseRegions.Case c : NoiseRegions.cases()) {
+            float[] region = new float[c.size()];
+            c.region(region);
+
+            for (int k = 0; k < c.sizeZ; k++)
+                for (int j = 0; j < NoiseRegions.SIZE_Y; j++)
+                    for (int i = 0; i < NoiseRegions.SIZE_X; i++)
+                        assertEquals(c.name + " at (" + i + ", " + j + ", " + k + ")",
+                                Float.floatToRawIntBits(c.sample(i, j, k)),
+                                Float.floatToRawIntBits(region[(k * NoiseRegions.SIZE_Y + j) * NoiseRegions.SIZE_X + i]));
+        }
+    }
+
+    @Test
+    public void vectorKernelsMatchScalarKernels() throws Exception {
+        assumeTrue("The vector kernels are not available on this JVM", NoiseKernels.getVectorLanes() > 0);
+
+        List<String> command = new ArrayList<String>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        command.add("--add-modules");
+        command.add("jdk.incubator.vector");
+        command.add("-Dplasma.vector=false");
+        command.add("-cp");
+        command.add(location(PerlinNoise3D.class) + File.pathSeparator + location(NoiseRegions.class));
+        command.add("NoiseRegions");
+
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        DataInputStream scalar = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+
+        assertEquals("Vector lanes of the scalar JVM", 0, scalar.readInt());
+
+        for (NoiseRegions.Case c : NoiseRegions.cases()) {
+            float[] region = new float[c.size()];
+            c.region(region);
+
+            for (int i = 0; i < region.length; i++)
+                assertEquals(c.name + " at index " + i, scalar.readInt(), Float.floatToRawIntBits(region[i]));
+        }
+
+        assertEquals("End of the scalar output", -1, scalar.read());
+        assertEquals("Exit code of the scalar JVM", 0, process.waitFor());
+    }
+
+    private static String location(Class<?> type) throws Exception {
+        return new File(type.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+    }
+}
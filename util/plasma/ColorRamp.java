@@ -0,0 +1,134 @@
+/**
+ * Maps values in [0;1] to packed RGB colors, either as a grayscale or as a false color ramp,
+ * optionally posterized and faded. The ramp is evaluated once per bin into a lookup table, so
+ * coloring a pixel is a single array access. Changing the palette means building a new
+ * ColorRamp, the fields themselves do not have to be recomputed.
+ * <p/>
+ * A smooth ramp rounds to the nearest of at least {@link #MIN_BINS} bins, so a color component
+ * is off by at most 255 / (2 * (bins - 1)) times the slope of the ramp. A posterized ramp has one
+ * entry per band and quantises with floor like {@link #computeRGB}, so it returns exactly the
+ * same colors.
+ */
+public class ColorRamp {
+
+    public static final int MIN_BINS = 4096;
+    public static final int DEFAULT_BINS = MIN_BINS;
+
+    private final boolean _color;
+    private final boolean _nonLinFade;
+    private final boolean _posterization;
+    private final int _posterizationNumber;
+
+    private final int[] _table;
+    private final double _scale;
+    private final double _rounding;
+
+    /**
+     * @param color               True for the false color ramp, false for grayscale
+     * @param nonLinFade          True for a nonlinear fade of the color
+     * @param posterization       True for a posterized image
+     * @param posterizationNumber Number of colors if posterized
+     * @param bins                Number of entries of the lookup table without posterization, at
+     *                            least MIN_BINS
+     */
+    public ColorRamp(boolean color, boolean nonLinFade, boolean posterization, int posterizationNumber, int bins) {
+        if (bins < MIN_BINS)
+            throw new IllegalArgumentException("A color ramp needs at least " + MIN_BINS + " bins, got " + bins);
+        if (posterization && posterizationNumber < 0)
+            throw new IllegalArgumentException("Negative posterization number " + posterizationNumber);
+
+        _color = color;
+        _nonLinFade = nonLinFade;
+        _posterization = posterization;
+        _posterizationNumber = posterizationNumber;
+
+        if (posterization) {
+            //Band k covers [k / (n + 1); (k + 1) / (n + 1)), the last entry is the color of 1
+            _table = new int[posterizationNumber + 2];
+            _scale = posterizationNumber + 1;
+            _rounding = 0;
+
+            for (int i = 0; i < _table.length; i++)
+                _table[i] = rampRGB((float) i / (posterizationNumber + 1));
+        } else {
+            _table = new int[bins];
+            _scale = bins - 1;
+            _rounding = 0.5;
+
+            for (int i = 0; i < bins; i++)
+                _table[i] = rampRGB(i / (float) _scale);
+        }
+    }
+
+    public ColorRamp(boolean color, boolean nonLinFade, boolean posterization, int posterizationNumber) {
+        this(color, nonLinFade, posterization, posterizationNumber, DEFAULT_BINS);
+    }
+
+    /**
+     * Returns the packed RGB value of the nearest bin, or of the band if posterized. Values
+     * outside of [0;1] are clipped.
+     */
+    public int lookup(float c) {
+        if (c > 0) {
+            return _table[c < 1.0f ? (int) (c * _scale + _rounding) : _table.length - 1];
+        }
+        return _table[0];
+    }
+
+    public int getBins() {
+        return _table.length;
+    }
+
+    //Returns the packed RGB value of the color for c, computed without the lookup table.
+    public int computeRGB(float c) {
+        if (_posterization) {
+            c = (float) Math.floor((double) c * (_posterizationNumber + 1)) / (_posterizationNumber + 1);
+        }
+        return rampRGB(c);
+    }
+
+    //The color for an already posterized c
+    private int rampRGB(float c) {
+        float Red = 0;
+        float Green = 0;
+        float Blue = 0;
+
+        if (!_color) {
+            Red = Green = Blue = fade(c, _nonLinFade);
+        } else {
+            c = fade(c, _nonLinFade);
+            if (c < 0.5f) {
+                Red = c * 2;
+            } else {
+                Red = (1.0f - c) * 2;
+            }
+
+            if (c >= 0.3f && c < 0.8f) {
+                Green = (c - 0.3f) * 2;
+            } else if (c < 0.3f) {
+                Green = (0.3f - c) * 2;
+            } else {
+                Green = (1.3f - c) * 2;
+            }
+
+            if (c >= 0.5f) {
+                Blue = (c - 0.5f) * 2;
+            } else {
+                Blue = (0.5f - c) * 2;
+            }
+        }
+        return (toByte(Red) << 16) | (toByte(Green) << 8) | toByte(Blue);
+    }
+
+    private static float fade(float t, boolean nonLin) {
+        if (nonLin) {
+            return t * t * t * (t * (t * 6 - 15) + 10);
+        }
+        return t;
+    }
+
+    //Converts a color component in [0;1] to [0;255], rounded like java.awt.Color does
+    private static int toByte(float component) {
+        return (int) (PlasmaGenerator.clip(component) * 255 + 0.5);
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Stateless hash of integer coordinates and a seed, for randomness that only depends on a
+ * position: the displacement of the plasma, the shuffle of the noise permutations and anything
+ * placed on the map. Unlike a random number generator it needs no state and no order, so tiles
+ * and threads can ask for any position at any time.
+ * <p/>
+ * The hash is the tail of xxHash32 over the seed, y, z and x: every coordinate is multiplied,
+ * rotated and multiplied into the state and the result goes through the xxHash32 avalanche, so
+ * neighbouring coordinates and seeds give unrelated values. The row methods mix the seed, y
+ * and z in once and then only hash consecutive x, without branches or table lookups.
+ */
+public final class CoordinateHash {
+
+    private static final int PRIME2 = 0x85EBCA77;
+    private static final int PRIME3 = 0xC2B2AE3D;
+    private static final int PRIME4 = 0x27D4EB2F;
+    private static final int PRIME5 = 0x165667B1;
+
+    private CoordinateHash() {
+    }
+
+    /**
+     * Returns 32 well mixed bits for the position and the seed.
+     */
+    public static int hash(int x, int y, int z, int seed) {
+        return finish(round(prefix(y, z, seed), x));
+    }
+
+    /**
+     * Returns a value in [0;1) for the position and the seed, with 24 random bits.
+     */
+    public static float unit(int x, int y, int z, int seed) {
+        return (hash(x, y, z, seed) >>> 8) * 0x1.0p-24f;
+    }
+
+    /**
+     * Fills dest[offset..offset + length) with hash(x0 + i, y, z, seed).
+     */
+    public static void hashRow(int x0, int y, int z, int seed, int[] dest, int offset, int length) {
+        int h = prefix(y, z, seed);
+        for (int i = 0; i < length; i++)
+            dest[offset + i] = finish(round(h, x0 + i));
+    }
+
+    /**
+     * Fills dest[offset..offset + length) with unit(x0 + i, y, z, seed).
+     */
+    public static void unitRow(int x0, int y, int z, int seed, float[] dest, int offset, int length) {
+        int h = prefix(y, z, seed);
+        for (int i = 0; i < length; i++)
+            dest[offset + i] = (finish(round(h, x0 + i)) >>> 8) * 0x1.0p-24f;
+    }
+
+    //State after the seed, y and z, shared by a row of x
+    private static int prefix(int y, int z, int seed) {
+        return round(round(seed + PRIME5, y), z);
+    }
+
+    private static int round(int h, int value) {
+        return Integer.rotateLeft(h + value * PRIME3, 17) * PRIME4;
+    }
+
+    private static int finish(int h) {
+        h ^= h >>> 15;
+        h *= PRIME2;
+        h ^= h >>> 13;
+        h *= PRIME3;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,333 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Erodes height fields, such as the mixed field of the GenerationEngine, in parallel on a
+ * fork/join pool. Heights are the field values, a pixel is one unit wide.
+ * <p/>
+ * Thermal erosion moves material from a sample down to its four neighbours wherever the drop
+ * to them exceeds the talus, until the slopes settle. Every iteration computes the new
+ * heights from the old ones only (a Jacobi step), so the rows are split into bands that read
+ * a one row halo of the previous iteration and never write each other's samples.
+ * <p/>
+ * Hydraulic erosion simulates water droplets that run down the slopes, pick up sediment where
+ * they speed up and drop it where they slow down or run into a pit. The field is split into
+ * tiles of DROPLET_TILE pixels that are processed in four checkerboard phases: a droplet never
+ * travels further than DROPLET_LIFETIME + 2 pixels from its tile, less than half a tile, so the
+ * tiles of one phase never touch the same samples. The droplets of a tile start at positions
+ * drawn from the seed and the tile and run one after another.
+ * <p/>
+ * Both modes give the same result for any thread count or scheduling order.
+ */
+public class Erosion {
+
+    /**
+     * Maximum number of steps of a droplet, each one pixel long.
+     */
+    public static final int DROPLET_LIFETIME = 30;
+
+    /**
+     * Width and height of the tiles the droplets are started in, larger than twice the
+     * distance a droplet can travel plus the samples it touches around its position.
+     */
+    public static final int DROPLET_TILE = 128;
+
+    // Farthest a droplet reads or writes from its tile: its steps plus the sample after its position
+    static final int DROPLET_REACH = DROPLET_LIFETIME + 2;
+
+    // The droplets of a tile are started in this many rounds of four phases, so no tile
+    // erodes all of its droplets before its neighbours start
+    private static final int DROPLET_ROUNDS = 4;
+
+    private static final int BAND_ROWS = 16;
+
+    // Droplet settings, heights in pixels
+    private static final float INERTIA = 0.05f;
+    private static final float CAPACITY = 4.0f;
+    private static final float MIN_CAPACITY = 0.01f;
+    private static final float DEPOSITION = 0.3f;
+    private static final float EROSION = 0.3f;
+    private static final float EVAPORATION = 0.01f;
+    private static final float GRAVITY = 4.0f;
+
+    private final ForkJoinPool _pool;
+    // Only split, which leaves it unchanged, so all tile tasks can share it
+    private final FastRandom _random;
+
+    /**
+     * @param pool The pool the bands and tiles are processed on
+     * @param seed The seed of the droplet positions
+     */
+    public Erosion(ForkJoinPool pool, long seed) {
+        _pool = pool;
+        _random = new FastRandom(seed);
+    }
+
+    /**
+     * Runs thermal erosion on the field. A sample whose drop d to some of its neighbours
+     * exceeds the talus gives rate * (dmax - talus) to these neighbours, split in proportion
+     * to d, where dmax is its steepest drop. The sum of the heights is kept.
+     *
+     * @param heights    The field to erode in place
+     * @param iterations Number of iterations
+     * @param talus      Height difference between neighbours that is left alone, at least 0
+     * @param rate       Part of the excess drop that is moved per iteration, in (0;0.5]
+     */
+    public void thermal(Field heights, int iterations, float talus, float rate) {
+        if (!(talus >= 0))
+            throw new IllegalArgumentException("The talus must not be negative, got " + talus);
+        if (!(rate > 0 && rate <= 0.5f))
+            throw new IllegalArgumentException("The rate must be in (0;0.5] to keep the iteration stable, got " + rate);
+
+        int width = heights.getWidth(), height = heights.getHeight();
+        if (iterations <= 0 || width == 0 || height == 0)
+            return;
+
+        Field shares = newField(heights), next = newField(heights), current = heights;
+        int bands = (height + BAND_ROWS - 1) / BAND_ROWS;
+
+        for (int i = 0; i < iterations; i++) {
+            final Field from = current, to = next;
+
+            // All shares must be known before a sample collects its neighbours' ones
+            _pool.invoke(new RangeTask(band -> thermalShares(from, shares, talus, rate, band), 0, bands));
+            _pool.invoke(new RangeTask(band -> thermalMove(from, shares, to, talus, band), 0, bands));
+
+            next = current;
+            current = to;
+        }
+
+        if (current != heights) {
+            float[] row = new float[width];
+            for (int y = 0; y < height; y++) {
+                current.getRow(0, y, row, 0, width);
+                heights.setRow(0, y, row, 0, width);
+            }
+        }
+    }
+
+    /**
+     * Runs hydraulic erosion on the field with droplets that start at random positions.
+     *
+     * @param heights           The field to erode in place
+     * @param dropletsPerSample Number of droplets per sample, 0.5 is a good start
+     * @param heightScale       Height of the field value 1 in pixels, which sets how steep
+     *                          the slopes are for the droplets
+     */
+    public void hydraulic(Field heights, float dropletsPerSample, float heightScale) {
+        if (!(heightScale > 0))
+            throw new IllegalArgumentException("The height scale must be positive, got " + heightScale);
+
+        if (!(dropletsPerSample > 0) || heights.getWidth() < 2 || heights.getHeight() < 2)
+            return;
+
+        int tilesX = (heights.getWidth() + DROPLET_TILE - 1) / DROPLET_TILE;
+        int tilesY = (heights.getHeight() + DROPLET_TILE - 1) / DROPLET_TILE;
+
+        for (int round = 0; round < DROPLET_ROUNDS; round++) {
+            for (int phase = 0; phase < 4; phase++) {
+                // Tiles of the same phase are one tile apart in both directions
+                final int r = round, px = phase & 1, py = phase >> 1;
+                final int columns = (tilesX - px + 1) / 2, rows = (tilesY - py + 1) / 2;
+
+                if (columns * rows > 0) {
+                    _pool.invoke(new RangeTask(i -> hydraulicTile(heights, dropletsPerSample, heightScale, r,
+                            px + 2 * (i % columns), py + 2 * (i / columns)), 0, columns * rows));
+                }
+            }
+        }
+    }
+
+    private static Field newField(Field like) {
+        return like.isOffHeap() ? Field.offHeap(like.getWidth(), like.getHeight()) : Field.onHeap(like.getWidth(), like.getHeight());
+    }
+
+    //Computes rate * (dmax - talus) / (sum of the drops over the talus) for the samples of a band
+    private static void thermalShares(Field heights, Field shares, float talus, float rate, int band) {
+        int width = heights.getWidth(), height = heights.getHeight();
+        float[] above = new float[width + 2], row = new float[width + 2], below = new float[width + 2], out = new float[width];
+
+        for (int y = band * BAND_ROWS, end = Math.min(y + BAND_ROWS, height); y < end; y++) {
+            readPadded(heights, y, row);
+            readPadded(heights, y > 0 ? y - 1 : y, above);
+            readPadded(heights, y < height - 1 ? y + 1 : y, below);
+
+            for (int x = 0; x < width; x++) {
+                float h = row[x + 1];
+                float left = h - row[x], right = h - row[x + 2], up = h - above[x + 1], down = h - below[x + 1];
+
+                // The maximum of all drops is the maximum of those over the talus whenever the sum is positive
+                float sum = (left > talus ? left : 0) + (right > talus ? right : 0) + (up > talus ? up : 0) + (down > talus ? down : 0);
+                float max = Math.max(Math.max(left, right), Math.max(up, down));
+
+                out[x] = sum > 0 ? rate * (max - talus) / sum : 0;
+            }
+            shares.setRow(0, y, out, 0, width);
+        }
+    }
+
+    //Gives away the drops over the talus times the share of the sample and collects those of
+    //the higher neighbours times their shares
+    private static void thermalMove(Field heights, Field shares, Field dest, float talus, int band) {
+        int width = heights.getWidth(), height = heights.getHeight();
+        float[] above = new float[width + 2], row = new float[width + 2], below = new float[width + 2], out = new float[width];
+        float[] shareAbove = new float[width + 2], share = new float[width + 2], shareBelow = new float[width + 2];
+
+        for (int y = band * BAND_ROWS, end = Math.min(y + BAND_ROWS, height); y < end; y++) {
+            int yAbove = y > 0 ? y - 1 : y, yBelow = y < height - 1 ? y + 1 : y;
+            readPadded(heights, y, row);
+            readPadded(heights, yAbove, above);
+            readPadded(heights, yBelow, below);
+            readPadded(shares, y, share);
+            readPadded(shares, yAbove, shareAbove);
+            readPadded(shares, yBelow, shareBelow);
+
+            for (int x = 0; x < width; x++) {
+                float h = row[x + 1], s = share[x + 1];
+
+                out[x] = h + move(h, s, row[x], share[x], talus) + move(h, s, row[x + 2], share[x + 2], talus)
+                        + move(h, s, above[x + 1], shareAbove[x + 1], talus) + move(h, s, below[x + 1], shareBelow[x + 1], talus);
+            }
+            dest.setRow(0, y, out, 0, width);
+        }
+    }
+
+    //Material a sample of height h and share s gains from a neighbour of height hn and share sn
+    private static float move(float h, float s, float hn, float sn, float talus) {
+        float d = h - hn;
+        return -d * (d > talus ? s : d < -talus ? sn : 0);
+    }
+
+    //Reads row y into dest[1..width] and repeats its first and last sample at both ends, so
+    //the samples at the edges see a neighbour of the same height that takes no part
+    private static void readPadded(Field field, int y, float[] dest) {
+        int width = field.getWidth();
+        field.getRow(0, y, dest, 1, width);
+        dest[0] = dest[1];
+        dest[width + 1] = dest[width];
+    }
+
+    //Runs the droplets of a tile on a copy of the area they can reach, which no other tile of
+    //the same phase touches
+    void hydraulicTile(Field heights, float dropletsPerSample, float heightScale, int round, int tileX, int tileY) {
+        int x0 = tileX * DROPLET_TILE, y0 = tileY * DROPLET_TILE;
+        int w = Math.min(DROPLET_TILE, heights.getWidth() - x0), h = Math.min(DROPLET_TILE, heights.getHeight() - y0);
+        int droplets = Math.round(dropletsPerSample * w * h / DROPLET_ROUNDS);
+
+        int left = Math.max(0, x0 - DROPLET_REACH), top = Math.max(0, y0 - DROPLET_REACH);
+        int width = Math.min(heights.getWidth(), x0 + w + DROPLET_REACH) - left;
+        int height = Math.min(heights.getHeight(), y0 + h + DROPLET_REACH) - top;
+
+        float[] area = new float[width * height];
+        for (int y = 0; y < height; y++)
+            heights.getRow(left, top + y, area, y * width, width);
+
+        FastRandom random = _random.split(round + DROPLET_ROUNDS * ((long) tileY << 32 ^ tileX & 0xFFFFFFFFL));
+        for (int i = 0; i < droplets; i++) {
+            droplet(area, width, height, heightScale,
+                    x0 - left + random.randomPosFloat() * w, y0 - top + random.randomPosFloat() * h);
+        }
+
+        for (int y = 0; y < height; y++)
+            heights.setRow(left, top + y, area, y * width, width);
+    }
+
+    //Runs a droplet starting at (x, y) of the width x height samples in area. It erodes and
+    //deposits at the four samples around its position before each step, weighted like a
+    //bilinear interpolation, and drops what it still carries where it ends.
+    private static void droplet(float[] area, int width, int height, float scale, float x, float y) {
+        float dirX = 0, dirY = 0, speed = 1, water = 1, sediment = 0;
+
+        for (int step = 0; step < DROPLET_LIFETIME; step++) {
+            if (!(x >= 0 && x < width - 1 && y >= 0 && y < height - 1))
+                return;
+
+            int cellX = (int) x, cellY = (int) y, i = cellY * width + cellX;
+            float u = x - cellX, v = y - cellY;
+
+            float h00 = area[i] * scale, h10 = area[i + 1] * scale;
+            float h01 = area[i + width] * scale, h11 = area[i + width + 1] * scale;
+            float current = (h00 * (1 - u) + h10 * u) * (1 - v) + (h01 * (1 - u) + h11 * u) * v;
+            float gradientX = (h10 - h00) * (1 - v) + (h11 - h01) * v;
+            float gradientY = (h01 - h00) * (1 - u) + (h11 - h10) * u;
+
+            dirX = dirX * INERTIA - gradientX * (1 - INERTIA);
+            dirY = dirY * INERTIA - gradientY * (1 - INERTIA);
+            float length = (float) Math.sqrt(dirX * dirX + dirY * dirY);
+            if (length == 0)
+                break;
+
+            dirX /= length;
+            dirY /= length;
+            x += dirX;
+            y += dirY;
+
+            // Sediment of droplets that leave the field is lost
+            if (!(x >= 0 && x < width - 1 && y >= 0 && y < height - 1))
+                return;
+
+            float delta = interpolate(area, width, x, y) * scale - current;
+            float capacity = Math.max(-delta * speed * water * CAPACITY, MIN_CAPACITY);
+            float amount;
+
+            if (delta > 0) {
+                // Uphill: fill the pit behind the droplet as far as the sediment allows
+                amount = Math.min(delta, sediment);
+            } else if (sediment > capacity) {
+                amount = (sediment - capacity) * DEPOSITION;
+            } else {
+                // Never dig deeper than the drop, which would leave a hole behind
+                amount = -Math.min((capacity - sediment) * EROSION, -delta);
+            }
+
+            sediment -= amount;
+            add(area, width, i, u, v, amount / scale);
+
+            speed = (float) Math.sqrt(Math.max(0, speed * speed - delta * GRAVITY));
+            water *= 1 - EVAPORATION;
+        }
+
+        int cellX = (int) x, cellY = (int) y;
+        add(area, width, cellY * width + cellX, x - cellX, y - cellY, sediment / scale);
+    }
+
+    private static float interpolate(float[] area, int width, float x, float y) {
+        int cellX = (int) x, cellY = (int) y, i = cellY * width + cellX;
+        float u = x - cellX, v = y - cellY;
+
+        return (area[i] * (1 - u) + area[i + 1] * u) * (1 - v) + (area[i + width] * (1 - u) + area[i + width + 1] * u) * v;
+    }
+
+    //Adds amount to the four samples from index i on, weighted by the position (u, v) between them
+    private static void add(float[] area, int width, int i, float u, float v, float amount) {
+        area[i] += amount * (1 - u) * (1 - v);
+        area[i + 1] += amount * u * (1 - v);
+        area[i + width] += amount * (1 - u) * v;
+        area[i + width + 1] += amount * u * v;
+    }
+
+    //Splits a range of band or tile indices in halves until a single one is left
+    @SuppressWarnings("serial")
+    private static class RangeTask extends RecursiveAction {
+
+        private final IntConsumer _body;
+        private final int _from, _to;
+
+        RangeTask(IntConsumer body, int from, int to) {
+            _body = body;
+            _from = from;
+            _to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (_to - _from == 1) {
+                _body.accept(_from);
+            } else {
+                int mid = (_from + _to) >>> 1;
+                invokeAll(new RangeTask(_body, _from, mid), new RangeTask(_body, mid, _to));
+            }
+        }
+    }
+}
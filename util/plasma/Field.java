@@ -0,0 +1,151 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * A two-dimensional field of float samples stored flat in row-major order, the sample (x, y)
+ * at index y * width + x. The samples live either in a float[] on the heap or in a direct
+ * buffer outside of it, which allows maps that would not fit into the heap (a 16k x 16k
+ * field takes 1 GB). A read-only view shares the samples of a field and throws a
+ * ReadOnlyBufferException on every write.
+ */
+public final class Field {
+
+    private final int _width;
+    private final int _height;
+
+    private final float[] _array;
+    private final FloatBuffer _buffer;
+
+    private Field(int width, int height, float[] array, FloatBuffer buffer) {
+        _width = width;
+        _height = height;
+        _array = array;
+        _buffer = buffer;
+    }
+
+    /**
+     * Creates a field backed by a float[] on the heap.
+     */
+    public static Field onHeap(int width, int height) {
+        return new Field(width, height, new float[checkedSize(width, height)], null);
+    }
+
+    /**
+     * Creates a field backed by a direct buffer outside of the heap.
+     */
+    public static Field offHeap(int width, int height) {
+        int size = checkedSize(width, height);
+        if (size > Integer.MAX_VALUE / 4)
+            throw new IllegalArgumentException("Field of " + width + "x" + height + " exceeds the 2 GB limit of a direct buffer");
+
+        FloatBuffer buffer = ByteBuffer.allocateDirect(size * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        return new Field(width, height, null, buffer);
+    }
+
+    /**
+     * Creates a field on top of an existing buffer, such as a memory mapped file. Writing to a
+     * field over a read-only buffer throws a ReadOnlyBufferException.
+     */
+    static Field wrap(int width, int height, FloatBuffer buffer) {
+        if (buffer.remaining() < checkedSize(width, height))
+            throw new IllegalArgumentException("Buffer of " + buffer.remaining() + " floats is too small for a field of " + width + "x" + height);
+        return new Field(width, height, null, buffer.slice());
+    }
+
+    /**
+     * Returns a view of the same samples that cannot be written. The view has no backing array,
+     * writes to the original field stay visible through it.
+     */
+    public Field readOnly() {
+        FloatBuffer buffer = _array != null ? FloatBuffer.wrap(_array) : _buffer.duplicate();
+        return new Field(_width, _height, null, buffer.asReadOnlyBuffer());
+    }
+
+    public boolean isReadOnly() {
+        return _buffer != null && _buffer.isReadOnly();
+    }
+
+    private static int checkedSize(int width, int height) {
+        if (width < 0 || height < 0 || (long) width * height > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Invalid field size " + width + "x" + height);
+        return width * height;
+    }
+
+    public int getWidth() {
+        return _width;
+    }
+
+    public int getHeight() {
+        return _height;
+    }
+
+    public boolean isOffHeap() {
+        return _buffer != null && _buffer.isDirect();
+    }
+
+    public long getBytes() {
+        return 4L * _width * _height;
+    }
+
+    public float get(int x, int y) {
+        int i = y * _width + x;
+        return _array != null ? _array[i] : _buffer.get(i);
+    }
+
+    public void set(int x, int y, float value) {
+        int i = y * _width + x;
+        if (_array != null) {
+            _array[i] = value;
+        } else {
+            _buffer.put(i, value);
+        }
+    }
+
+    /**
+     * Copies length samples of row y, starting at column x, into dest at offset.
+     */
+    public void getRow(int x, int y, float[] dest, int offset, int length) {
+        checkRow(x, y, length);
+        if (_array != null) {
+            System.arraycopy(_array, y * _width + x, dest, offset, length);
+        } else {
+            FloatBuffer view = _buffer.duplicate();
+            view.position(y * _width + x);
+            view.get(dest, offset, length);
+        }
+    }
+
+    /**
+     * Copies length samples from src at offset into row y, starting at column x.
+     */
+    public void setRow(int x, int y, float[] src, int offset, int length) {
+        checkRow(x, y, length);
+        if (_array != null) {
+            System.arraycopy(src, offset, _array, y * _width + x, length);
+        } else {
+            FloatBuffer view = _buffer.duplicate();
+            view.position(y * _width + x);
+            view.put(src, offset, length);
+        }
+    }
+
+    private void checkRow(int x, int y, int length) {
+        if (x < 0 || y < 0 || y >= _height || length < 0 || x + length > _width)
+            throw new IndexOutOfBoundsException("Row segment " + x + "+" + length + " at y=" + y + " outside of " + _width + "x" + _height);
+    }
+
+    /**
+     * Returns the backing array, or null if the field is stored off-heap or read-only.
+     */
+    public float[] array() {
+        return _array;
+    }
+
+    /**
+     * Returns a view of the whole field as a buffer, wrapping the array for on-heap fields.
+     */
+    public FloatBuffer asBuffer() {
+        return _array != null ? FloatBuffer.wrap(_array) : _buffer.duplicate();
+    }
+}
@@ -0,0 +1,177 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Keeps generated plasma, Perlin and mixed fields around so that asking for the same seed and
+ * settings again does not recompute them. The cache is bounded by the memory the fields
+ * occupy and evicts the least recently used entries first. It is safe to use from several
+ * threads; the returned fields are shared between all callers and therefore read-only views,
+ * see Field.readOnly().
+ */
+public class FieldCache {
+
+    private final ForkJoinPool _pool;
+    private final long _maxBytes;
+    private final boolean _offHeap;
+    private final LinkedHashMap<Key, Fields> _entries = new LinkedHashMap<Key, Fields>(16, 0.75f, true);
+    private long _bytes;
+
+    /**
+     * @param pool     The pool missing fields are generated on
+     * @param maxBytes Upper bound of the memory held by the cached fields
+     * @param offHeap  True to store the fields in direct buffers outside of the heap
+     */
+    public FieldCache(ForkJoinPool pool, long maxBytes, boolean offHeap) {
+        _pool = pool;
+        _maxBytes = maxBytes;
+        _offHeap = offHeap;
+    }
+
+    /**
+     * Returns read-only views of the fields for the given settings, generating them if they are
+     * not cached.
+     */
+    public Fields get(Key key) {
+        synchronized (this) {
+            Fields cached = _entries.get(key);
+            if (cached != null)
+                return cached;
+        }
+
+        // Generate outside of the lock, so other keys can be served meanwhile. Two threads
+        // missing the same key both generate it, which is wasteful but yields the same values.
+        Fields fields = new Fields(key._width, key._height, _offHeap);
+        GenerationEngine engine = new GenerationEngine(_pool,
+                new PlasmaGenerator(key._seed, key._tileWidth, key._tileHeight, key._strength),
+                new PerlinNoise3D(key._seed, key._octaves, key._lacunarity, key._persistence));
+        engine.generate(fields.plasma, fields.perlin, fields.mixed);
+        fields = fields.readOnly();
+
+        synchronized (this) {
+            Fields cached = _entries.get(key);
+            if (cached != null)
+                return cached;
+
+            if (fields.getBytes() <= _maxBytes) {
+                _entries.put(key, fields);
+                _bytes += fields.getBytes();
+                evict();
+            }
+        }
+
+        return fields;
+    }
+
+    public synchronized long getBytes() {
+        return _bytes;
+    }
+
+    public synchronized int size() {
+        return _entries.size();
+    }
+
+    public synchronized void clear() {
+        _entries.clear();
+        _bytes = 0;
+    }
+
+    //Removes the least recently used entries until the cache fits into its bound again
+    private void evict() {
+        Iterator<Map.Entry<Key, Fields>> it = _entries.entrySet().iterator();
+        while (_bytes > _maxBytes && it.hasNext()) {
+            _bytes -= it.next().getValue().getBytes();
+            it.remove();
+        }
+    }
+
+    /**
+     * The generation settings a set of fields depends on.
+     */
+    public static final class Key {
+
+        private final int _seed;
+        private final int _octaves;
+        private final double _lacunarity;
+        private final double _persistence;
+        private final float _strength;
+        private final int _tileWidth;
+        private final int _tileHeight;
+        private final int _width;
+        private final int _height;
+
+        public Key(int seed, int octaves, double lacunarity, double persistence, float strength,
+                   int tileWidth, int tileHeight, int width, int height) {
+            _seed = seed;
+            _octaves = octaves;
+            _lacunarity = lacunarity;
+            _persistence = persistence;
+            _strength = strength;
+            _tileWidth = tileWidth;
+            _tileHeight = tileHeight;
+            _width = width;
+            _height = height;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+
+            Key key = (Key) o;
+            return _seed == key._seed && _octaves == key._octaves
+                    && Double.compare(_lacunarity, key._lacunarity) == 0
+                    && Double.compare(_persistence, key._persistence) == 0
+                    && Float.compare(_strength, key._strength) == 0
+                    && _tileWidth == key._tileWidth && _tileHeight == key._tileHeight
+                    && _width == key._width && _height == key._height;
+        }
+
+        @Override
+        public int hashCode() {
+            long bits = Double.doubleToLongBits(_lacunarity) * 31 + Double.doubleToLongBits(_persistence);
+            int result = _seed;
+            result = 31 * result + _octaves;
+            result = 31 * result + (int) (bits ^ (bits >>> 32));
+            result = 31 * result + Float.floatToIntBits(_strength);
+            result = 31 * result + _tileWidth;
+            result = 31 * result + _tileHeight;
+            result = 31 * result + _width;
+            result = 31 * result + _height;
+            return result;
+        }
+    }
+
+    /**
+     * The plasma, Perlin and mixed field generated for one key.
+     */
+    public static final class Fields {
+
+        public final Field plasma;
+        public final Field perlin;
+        public final Field mixed;
+
+        Fields(int width, int height, boolean offHeap) {
+            this(offHeap ? Field.offHeap(width, height) : Field.onHeap(width, height),
+                    offHeap ? Field.offHeap(width, height) : Field.onHeap(width, height),
+                    offHeap ? Field.offHeap(width, height) : Field.onHeap(width, height));
+        }
+
+        private Fields(Field plasma, Field perlin, Field mixed) {
+            this.plasma = plasma;
+            this.perlin = perlin;
+            this.mixed = mixed;
+        }
+
+        Fields readOnly() {
+            return new Fields(plasma.readOnly(), perlin.readOnly(), mixed.readOnly());
+        }
+
+        public long getBytes() {
+            return plasma.getBytes() + perlin.getBytes() + mixed.getBytes();
+        }
+    }
+}
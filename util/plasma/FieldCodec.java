@@ -0,0 +1,204 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact encoding of fields with values in [0;1], like the plasma, Perlin and mixed fields.
+ * The samples are quantised to 1 to 16 bits, each sample is predicted from its left, upper
+ * and upper left neighbour (the median edge detector of LOCO-I) and only the difference to
+ * the prediction is stored, which is close to 0 for the smooth fields of the generator. The
+ * differences are deflated, for 9 to 16 bits with the high and the low bytes of a row stored
+ * apart, so the mostly zero high bytes compress to almost nothing.
+ * <p/>
+ * A decoded sample differs from the encoded one by at most getMaxError(bits); values outside
+ * of [0;1] are clipped first.
+ * <p/>
+ * Format: the magic "PLFC", width, height and bits as big endian ints, then the deflated
+ * differences row by row.
+ */
+public final class FieldCodec {
+
+    static final int HEADER_BYTES = 16;
+
+    private static final int MAGIC = 0x504C4643;    // "PLFC"
+
+    private FieldCodec() {
+    }
+
+    /**
+     * Encodes the field with the fastest deflate level.
+     *
+     * @param bits Bits per sample, 1 to 16
+     */
+    public static byte[] encode(Field field, int bits) {
+        return encode(field, bits, Deflater.BEST_SPEED);
+    }
+
+    /**
+     * Encodes the field.
+     *
+     * @param bits  Bits per sample, 1 to 16
+     * @param level Deflate level from Deflater.NO_COMPRESSION to Deflater.BEST_COMPRESSION
+     */
+    public static byte[] encode(Field field, int bits, int level) {
+        if (bits < 1 || bits > 16)
+            throw new IllegalArgumentException("Samples are quantised to 1 to 16 bits, got " + bits);
+
+        int width = field.getWidth(), height = field.getHeight();
+        int max = (1 << bits) - 1;
+        int bytes = bits > 8 ? 2 : 1;
+
+        float[] row = new float[width];
+        int[] above = new int[width];
+        int[] current = new int[width];
+        byte[] out = new byte[width * bytes];
+        byte[] chunk = new byte[64 * 1024];
+
+        // A quarter of the raw size is a typical result, the product overflows an int for large fields
+        ByteArrayOutputStream result = new ByteArrayOutputStream(
+                (int) Math.min(Integer.MAX_VALUE - 8, HEADER_BYTES + (long) width * height * bytes / 4));
+        result.write(ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(width).putInt(height).putInt(bits).array(), 0, HEADER_BYTES);
+
+        Deflater deflater = new Deflater(level);
+        try {
+            for (int y = 0; y < height; y++) {
+                field.getRow(0, y, row, 0, width);
+
+                for (int x = 0; x < width; x++) {
+                    int q = (int) (PlasmaGenerator.clip(row[x]) * max + 0.5f);
+                    current[x] = q;
+
+                    int e = (q - predict(above, current, x, y)) & max;
+                    // Differences modulo 2^bits, zigzagged so small negative ones become small too
+                    e = e > max >> 1 ? (max - e) * 2 + 1 : e * 2;
+
+                    if (bytes == 2) {
+                        out[x] = (byte) (e >>> 8);
+                        out[width + x] = (byte) e;
+                    } else {
+                        out[x] = (byte) e;
+                    }
+                }
+
+                deflater.setInput(out);
+                while (!deflater.needsInput())
+                    result.write(chunk, 0, deflater.deflate(chunk));
+
+                int[] swap = above;
+                above = current;
+                current = swap;
+            }
+
+            deflater.finish();
+            while (!deflater.finished())
+                result.write(chunk, 0, deflater.deflate(chunk));
+        } finally {
+            deflater.end();
+        }
+
+        return result.toByteArray();
+    }
+
+    /**
+     * Decodes data written by encode into a new field on the heap.
+     *
+     * @throws IOException If data is no encoded field or it is damaged
+     */
+    public static Field decode(byte[] data) throws IOException {
+        ByteBuffer header = ByteBuffer.wrap(data);
+        if (data.length < HEADER_BYTES || header.getInt() != MAGIC)
+            throw new IOException("Not an encoded field");
+
+        int width = header.getInt(), height = header.getInt(), bits = header.getInt();
+        if (width < 0 || height < 0 || bits < 1 || bits > 16)
+            throw new IOException("Invalid encoded field of " + width + "x" + height + " samples with " + bits + " bits");
+
+        Field field = Field.onHeap(width, height);
+        decode(data, field);
+        return field;
+    }
+
+    /**
+     * Decodes data written by encode into a field of the same size.
+     *
+     * @throws IOException If data is no encoded field of the size of dest or it is damaged
+     */
+    public static void decode(byte[] data, Field dest) throws IOException {
+        ByteBuffer header = ByteBuffer.wrap(data);
+        if (data.length < HEADER_BYTES || header.getInt() != MAGIC)
+            throw new IOException("Not an encoded field");
+
+        int width = header.getInt(), height = header.getInt(), bits = header.getInt();
+        if (width != dest.getWidth() || height != dest.getHeight() || bits < 1 || bits > 16)
+            throw new IOException("Encoded field of " + width + "x" + height + " samples with " + bits
+                    + " bits does not fit into " + dest.getWidth() + "x" + dest.getHeight());
+
+        int max = (1 << bits) - 1;
+        int bytes = bits > 8 ? 2 : 1;
+        float scale = 1.0f / max;
+
+        float[] row = new float[width];
+        int[] above = new int[width];
+        int[] current = new int[width];
+        byte[] in = new byte[width * bytes];
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, HEADER_BYTES, data.length - HEADER_BYTES);
+
+            for (int y = 0; y < height; y++) {
+                for (int read = 0; read < in.length; ) {
+                    int n = inflater.inflate(in, read, in.length - read);
+                    if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+                        throw new IOException("Encoded field ends in row " + y);
+                    read += n;
+                }
+
+                for (int x = 0; x < width; x++) {
+                    int e = bytes == 2 ? (in[x] & 0xFF) << 8 | in[width + x] & 0xFF : in[x] & 0xFF;
+                    e = (e & 1) != 0 ? max - (e >>> 1) : e >>> 1;
+
+                    int q = (predict(above, current, x, y) + e) & max;
+                    current[x] = q;
+                    row[x] = q * scale;
+                }
+                dest.setRow(0, y, row, 0, width);
+
+                int[] swap = above;
+                above = current;
+                current = swap;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Encoded field is damaged", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Returns the largest difference between a value in [0;1] and its decoded value for the
+     * given bits per sample, half a quantisation step plus the float rounding.
+     */
+    public static float getMaxError(int bits) {
+        return 0.5f / ((1 << bits) - 1) + Math.ulp(1.0f);
+    }
+
+    //Median edge detector: the left or upper neighbour at an edge, their sum minus the
+    //upper left one on a smooth slope. The first row and column only use the other neighbour.
+    private static int predict(int[] above, int[] current, int x, int y) {
+        if (y == 0)
+            return x == 0 ? 0 : current[x - 1];
+        if (x == 0)
+            return above[0];
+
+        int a = current[x - 1], b = above[x], c = above[x - 1];
+        if (c >= Math.max(a, b))
+            return Math.min(a, b);
+        if (c <= Math.min(a, b))
+            return Math.max(a, b);
+        return a + b - c;
+    }
+}
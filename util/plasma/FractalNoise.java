@@ -0,0 +1,75 @@
+/**
+ * A NoiseSource that adds up the octaves of a basic noise given by noise2d and noise3d as
+ * fractional Brownian motion, the same way as the aperiodic default fBm of the Perlin noise: the
+ * coordinates are multiplied by the lacunarity from one octave to the next and every octave is
+ * weighted with lacunarity^(-persistence * octave). The region methods evaluate the samples one
+ * by one.
+ */
+public abstract class FractalNoise extends LatticeNoise implements NoiseSource {
+
+    /**
+     * @param seed        The seed value
+     * @param octaves     The amount of octaves added by the sample methods
+     * @param lacunarity  The frequency multiplier between two octaves
+     * @param persistence The exponent H of the spectral weights lacunarity^(-H * octave)
+     */
+    FractalNoise(int seed, int octaves, double lacunarity, double persistence) {
+        super(seed, octaves, lacunarity, persistence);
+    }
+
+    /**
+     * Returns a single octave of the noise at the given position.
+     */
+    public abstract double noise2d(double x, double y);
+
+    /**
+     * Returns a single octave of the noise at the given position.
+     */
+    public abstract double noise3d(double x, double y, double z);
+
+    public double sample2d(double x, double y) {
+        double result = 0.0;
+
+        for (int i = 0; i < _octaves; i++) {
+            result += noise2d(x, y) * _spectralWeights[i];
+
+            x *= _lacunarity;
+            y *= _lacunarity;
+        }
+
+        return result;
+    }
+
+    public double sample3d(double x, double y, double z) {
+        double result = 0.0;
+
+        for (int i = 0; i < _octaves; i++) {
+            result += noise3d(x, y, z) * _spectralWeights[i];
+
+            x *= _lacunarity;
+            y *= _lacunarity;
+            z *= _lacunarity;
+        }
+
+        return result;
+    }
+
+    public void sample2dRegion(double x0, double y0, double step, int sizeX, int sizeY, float[] dest) {
+        if (dest.length < sizeX * sizeY)
+            throw new IllegalArgumentException("Destination holds " + dest.length + " values, region needs " + sizeX * sizeY);
+
+        for (int j = 0, k = 0; j < sizeY; j++)
+            for (int i = 0; i < sizeX; i++)
+                dest[k++] = (float) sample2d(x0 + i * step, y0 + j * step);
+    }
+
+    public void sample3dRegion(double x0, double y0, double z0, double step, int sizeX, int sizeY, int sizeZ, float[] dest) {
+        if (dest.length < sizeX * sizeY * sizeZ)
+            throw new IllegalArgumentException("Destination holds " + dest.length + " values, region needs " + sizeX * sizeY * sizeZ);
+
+        for (int k = 0, n = 0; k < sizeZ; k++)
+            for (int j = 0; j < sizeY; j++)
+                for (int i = 0; i < sizeX; i++)
+                    dest[n++] = (float) sample3d(x0 + i * step, y0 + j * step, z0 + k * step);
+    }
+}
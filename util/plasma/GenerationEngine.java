@@ -0,0 +1,200 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Generates plasma, Perlin and mixed fields in parallel. The requested area is split into
+ * tiles of the plasma tile size, which are computed as fork/join tasks on the given pool.
+ * <p/>
+ * Every value only depends on its position, the seed and the tile size: tiles never read or
+ * write each other's pixels, so the outcome is the same for any thread count or scheduling
+ * order. The same holds for generateTile(int, int, Field, Field, Field), which streams single
+ * tiles of an unbounded world.
+ * <p/>
+ * For fields that tile seamlessly, give the plasma periods in pixels and the Perlin noise the
+ * same periods in noise coordinates, periodX * PERLIN_SCALE along x and periodY * PERLIN_SCALE
+ * along z. A field of one period then wraps around at its edges.
+ * <p/>
+ * The Perlin field can come from any NoiseSource, sampled like the Perlin noise in the plane
+ * y = 0 of its 3d noise. Only the Perlin noise supports periods and single precision.
+ */
+public class GenerationEngine {
+
+    /**
+     * Size of a pixel in the coordinates of the Perlin noise. The pixel (x, y) is sampled at
+     * (x * PERLIN_SCALE, 0, y * PERLIN_SCALE).
+     */
+    public static final double PERLIN_SCALE = 0.005;
+
+    private final ForkJoinPool _pool;
+    private final PlasmaGenerator _plasma;
+    private final NoiseSource _noise;
+    private final PerlinNoise3D _perlin;
+    private final boolean _singlePrecision;
+
+    /**
+     * @param pool   The pool the tiles are computed on
+     * @param plasma Generator for the plasma tiles, also defines the tile size
+     * @param perlin Noise used for the Perlin field, shared by all workers
+     */
+    public GenerationEngine(ForkJoinPool pool, PlasmaGenerator plasma, PerlinNoise3D perlin) {
+        this(pool, plasma, perlin, false);
+    }
+
+    /**
+     * @param pool            The pool the tiles are computed on
+     * @param plasma          Generator for the plasma tiles, also defines the tile size
+     * @param perlin          Noise used for the Perlin field, shared by all workers
+     * @param singlePrecision True to compute the Perlin field with the faster single precision
+     *                        noise, see PerlinNoise3D for its deviation from the double path
+     */
+    public GenerationEngine(ForkJoinPool pool, PlasmaGenerator plasma, PerlinNoise3D perlin, boolean singlePrecision) {
+        checkPeriods(plasma, perlin);
+
+        _pool = pool;
+        _plasma = plasma;
+        _noise = new PerlinNoise(perlin);
+        _perlin = perlin;
+        _singlePrecision = singlePrecision;
+    }
+
+    /**
+     * @param pool   The pool the tiles are computed on
+     * @param plasma Generator for the plasma tiles, also defines the tile size
+     * @param noise  Noise used for the Perlin field, shared by all workers
+     */
+    public GenerationEngine(ForkJoinPool pool, PlasmaGenerator plasma, NoiseSource noise) {
+        if (noise instanceof PerlinNoise) {
+            checkPeriods(plasma, ((PerlinNoise) noise).getNoise3d());
+        } else if (plasma.getPeriodX() != 0 || plasma.getPeriodY() != 0) {
+            throw new IllegalArgumentException("Only the Perlin noise can be periodic, got " + noise.getClass().getName());
+        }
+
+        _pool = pool;
+        _plasma = plasma;
+        _noise = noise;
+        _perlin = null;
+        _singlePrecision = false;
+    }
+
+    /**
+     * Fills the given fields. All fields must have the same dimensions.
+     *
+     * @param plasma Destination of the plasma field
+     * @param perlin Destination of the Perlin field
+     * @param mixed  Destination of the mixed field, may be null if it is not needed
+     */
+    public void generate(Field plasma, Field perlin, Field mixed) {
+        int width = plasma.getWidth(), height = plasma.getHeight();
+        int tilesX = (width + _plasma.getTileWidth() - 1) / _plasma.getTileWidth();
+        int tilesY = (height + _plasma.getTileHeight() - 1) / _plasma.getTileHeight();
+
+        if (tilesX * tilesY == 0)
+            return;
+
+        _pool.invoke(new TileTask(plasma, perlin, mixed, tilesX, 0, tilesX * tilesY));
+    }
+
+    /**
+     * Generates the tile (tileX, tileY) of an unbounded world into the top left corner of the
+     * given fields, on the calling thread. The tile covers the pixels from
+     * (tileX * tileWidth, tileY * tileHeight) on, negative tiles included, and its values are the
+     * same as those of generate(Field, Field, Field) at that position, so neighbouring tiles join
+     * seamlessly. Nothing is kept between calls, so a stream of tiles runs in constant memory
+     * when the fields are reused.
+     *
+     * @param tileX  Column of the tile, may be negative
+     * @param tileY  Row of the tile, may be negative
+     * @param plasma Destination of the plasma tile, pixels beyond its size are dropped
+     * @param perlin Destination of the Perlin tile, at least as large as plasma
+     * @param mixed  Destination of the mixed tile, may be null if it is not needed
+     */
+    public void generateTile(int tileX, int tileY, Field plasma, Field perlin, Field mixed) {
+        int x0 = tileX * _plasma.getTileWidth(), y0 = tileY * _plasma.getTileHeight();
+        int w = Math.min(_plasma.getTileWidth(), plasma.getWidth());
+        int h = Math.min(_plasma.getTileHeight(), plasma.getHeight());
+
+        _plasma.calcPlasmaTile(plasma, tileX, tileY);
+        generatePerlin(plasma, perlin, mixed, 0, 0, x0, y0, w, h);
+    }
+
+    private static void checkPeriods(PlasmaGenerator plasma, PerlinNoise3D perlin) {
+        if (plasma.getPeriodX() * PERLIN_SCALE != perlin.getPeriodX() || plasma.getPeriodY() * PERLIN_SCALE != perlin.getPeriodZ())
+            throw new IllegalArgumentException("The Perlin periods " + perlin.getPeriodX() + ", " + perlin.getPeriodZ()
+                    + " do not match the plasma periods " + plasma.getPeriodX() + ", " + plasma.getPeriodY() + " times " + PERLIN_SCALE);
+    }
+
+    public int getTileWidth() {
+        return _plasma.getTileWidth();
+    }
+
+    public int getTileHeight() {
+        return _plasma.getTileHeight();
+    }
+
+    private void generateTile(Field plasma, Field perlin, Field mixed, int tileX, int tileY) {
+        int x0 = tileX * _plasma.getTileWidth(), y0 = tileY * _plasma.getTileHeight();
+        int w = Math.min(_plasma.getTileWidth(), plasma.getWidth() - x0);
+        int h = Math.min(_plasma.getTileHeight(), plasma.getHeight() - y0);
+
+        _plasma.calcPlasmaPiece(plasma, x0, y0);
+        generatePerlin(plasma, perlin, mixed, x0, y0, x0, y0, w, h);
+    }
+
+    //Fills the w x h pixels at (destX, destY) of perlin and mixed with the Perlin noise at (x0, y0)
+    //of the world and its mix with the plasma already in plasma
+    private void generatePerlin(Field plasma, Field perlin, Field mixed, int destX, int destY, int x0, int y0, int w, int h) {
+        float[] region = new float[w * h];
+
+        if (_singlePrecision) {
+            _perlin.fBm3fRegion((float) (x0 * PERLIN_SCALE), 0, (float) (y0 * PERLIN_SCALE), (float) PERLIN_SCALE, w, 1, h, region);
+        } else {
+            _noise.sample3dRegion(x0 * PERLIN_SCALE, 0, y0 * PERLIN_SCALE, PERLIN_SCALE, w, 1, h, region);
+        }
+
+        for (int i = 0; i < region.length; i++)
+            region[i] = PlasmaGenerator.clip((region[i] + 1) / 2);
+
+        float[] plasmaRow = new float[w];
+
+        for (int j = 0; j < h; j++) {
+            perlin.setRow(destX, destY + j, region, j * w, w);
+
+            if (mixed != null) {
+                plasma.getRow(destX, destY + j, plasmaRow, 0, w);
+
+                for (int i = 0; i < w; i++)
+                    plasmaRow[i] = PlasmaGenerator.mix(region[j * w + i], plasmaRow[i]);
+
+                mixed.setRow(destX, destY + j, plasmaRow, 0, w);
+            }
+        }
+    }
+
+    //Splits a range of tile indices in halves until a single tile is left
+    @SuppressWarnings("serial")
+    private class TileTask extends RecursiveAction {
+
+        private final Field _plasmaField, _perlinField, _mixedField;
+        private final int _tilesX, _from, _to;
+
+        TileTask(Field plasma, Field perlin, Field mixed, int tilesX, int from, int to) {
+            _plasmaField = plasma;
+            _perlinField = perlin;
+            _mixedField = mixed;
+            _tilesX = tilesX;
+            _from = from;
+            _to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (_to - _from == 1) {
+                generateTile(_plasmaField, _perlinField, _mixedField, _from % _tilesX, _from / _tilesX);
+            } else {
+                int mid = (_from + _to) >>> 1;
+                invokeAll(new TileTask(_plasmaField, _perlinField, _mixedField, _tilesX, _from, mid),
+                        new TileTask(_plasmaField, _perlinField, _mixedField, _tilesX, mid, _to));
+            }
+        }
+    }
+}
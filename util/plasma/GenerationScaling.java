@@ -0,0 +1,57 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Prints the throughput of the GenerationEngine for 1 to N worker threads and checks that
+ * every thread count produces exactly the same fields.
+ * <p/>
+ * Usage: java GenerationScaling [maxThreads] [width] [height]
+ */
+public class GenerationScaling {
+
+    public static void main(String[] args) {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+        int height = args.length > 2 ? Integer.parseInt(args[2]) : 2048;
+        int runs = 5;
+
+        float[] reference = null;
+
+        System.out.println("Generating " + width + "x" + height + " (plasma + Perlin + mixed), best of " + runs + " runs");
+        System.out.println("threads  ms/area  Mpixel/s  speedup  identical");
+
+        double singleThreaded = 0;
+
+        for (int threads = 1; threads <= maxThreads; threads++) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            Field plasma = Field.onHeap(width, height);
+            Field perlin = Field.onHeap(width, height);
+            Field mixed = Field.onHeap(width, height);
+
+            long best = Long.MAX_VALUE;
+
+            for (int run = 0; run < runs; run++) {
+                PerlinNoise3D noise = new PerlinNoise3D(42, 3, PerlinNoise3D.DEFAULT_LACUNARITY, PerlinNoise3D.DEFAULT_PERSISTENCE);
+                GenerationEngine engine = new GenerationEngine(pool, new PlasmaGenerator(42, 1024, 128, 1), noise);
+
+                long start = System.nanoTime();
+                engine.generate(plasma, perlin, mixed);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+
+            pool.shutdown();
+
+            if (reference == null)
+                reference = mixed.array();
+
+            double ms = best / 1e6;
+            double pixelsPerSecond = (double) width * height / (best / 1e9);
+
+            if (threads == 1)
+                singleThreaded = ms;
+
+            System.out.println(String.format("%7d  %7.1f  %8.2f  %7.2f  %s", threads, ms, pixelsPerSecond / 1e6,
+                    singleThreaded / ms, Arrays.equals(reference, mixed.array())));
+        }
+    }
+}
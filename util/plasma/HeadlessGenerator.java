@@ -0,0 +1,83 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Command line front end of the generator that needs neither an applet nor a display. It
+ * computes the plasma, Perlin and mixed fields and writes them as 8 bit grayscale PGM files.
+ * <p/>
+ * Usage: java HeadlessGenerator width height [seed] [outputDirectory] [tileStore]
+ * <p/>
+ * With a tile store file the tiles are kept in it, see TileStore, and a later run with the same
+ * seed reads them instead of computing them again.
+ */
+public class HeadlessGenerator {
+
+    //Same defaults as the Plasma applet
+    static final int TILE_WIDTH = 2048 / 2;
+    static final int TILE_HEIGHT = 256 / 2;
+    static final float STRENGTH = 1;
+    static final int PERLIN_OCTAVES = 3;
+
+    static final long OFF_HEAP_SAMPLES = 4096L * 4096;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java HeadlessGenerator width height [seed] [outputDirectory] [tileStore]");
+            System.exit(1);
+        }
+
+        int width = Integer.parseInt(args[0]);
+        int height = Integer.parseInt(args[1]);
+        int seed = args.length > 2 ? Integer.parseInt(args[2]) : Integer.MAX_VALUE / 10000 + 11;
+        File directory = new File(args.length > 3 ? args[3] : ".");
+
+        //Large maps are kept off-heap, so they do not need a huge -Xmx
+        boolean offHeap = (long) width * height > OFF_HEAP_SAMPLES;
+        Field plasma = offHeap ? Field.offHeap(width, height) : Field.onHeap(width, height);
+        Field perlin = offHeap ? Field.offHeap(width, height) : Field.onHeap(width, height);
+        Field mixed = offHeap ? Field.offHeap(width, height) : Field.onHeap(width, height);
+
+        PlasmaGenerator plasmaGenerator = new PlasmaGenerator(seed, TILE_WIDTH, TILE_HEIGHT, STRENGTH);
+        PerlinNoise3D perlinNoise = new PerlinNoise3D(seed, PERLIN_OCTAVES, PerlinNoise3D.DEFAULT_LACUNARITY, PerlinNoise3D.DEFAULT_PERSISTENCE);
+
+        if (args.length > 4) {
+            TileStore store = new TileStore(new File(args[4]), plasmaGenerator, perlinNoise, false);
+            try {
+                store.fill(plasma, perlin, mixed);
+            } finally {
+                store.close();
+            }
+        } else {
+            new GenerationEngine(ForkJoinPool.commonPool(), plasmaGenerator, perlinNoise).generate(plasma, perlin, mixed);
+        }
+
+        writePgm(new File(directory, "plasma.pgm"), plasma);
+        writePgm(new File(directory, "perlin.pgm"), perlin);
+        writePgm(new File(directory, "mixed.pgm"), mixed);
+    }
+
+    //Writes a field with values in [0;1] as binary 8 bit PGM
+    static void writePgm(File file, Field field) throws IOException {
+        int width = field.getWidth(), height = field.getHeight();
+        float[] values = new float[width];
+        byte[] row = new byte[width];
+
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            out.write(("P5\n" + width + " " + height + "\n255\n").getBytes("US-ASCII"));
+
+            for (int y = 0; y < height; y++) {
+                field.getRow(0, y, values, 0, width);
+                for (int x = 0; x < width; x++)
+                    row[x] = (byte) Math.round(values[x] * 255);
+                out.write(row);
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Base of the noise generators that are built on a permutation table of 256 lattice points and
+ * add up several octaves. It holds the fBm settings, the spectral weights derived from them and
+ * the permutation table shuffled with the seed, together with the interpolation helpers all of
+ * them share. The settings are fixed when the generator is created, so instances are immutable
+ * and thread-safe.
+ */
+public abstract class LatticeNoise {
+
+    final int _seed;
+    final int _octaves;
+    final double _lacunarity;
+    final double _persistence;
+
+    // Weight lacunarity^(-persistence * octave) of every octave, in double and single precision
+    final double[] _spectralWeights;
+    final float _lacunarityFloat;
+    final float[] _spectralWeightsFloat;
+
+    // The shuffled numbers 0..255, replicated in the upper 256 entries so p[p[X] + Y] needs no mask
+    final int[] _noisePermutations;
+
+    /**
+     * @param seed        The seed value
+     * @param octaves     The amount of octaves added by the fBm functions
+     * @param lacunarity  The frequency multiplier between two octaves
+     * @param persistence The exponent H of the spectral weights lacunarity^(-H * octave)
+     */
+    LatticeNoise(int seed, int octaves, double lacunarity, double persistence) {
+        _seed = seed;
+        _octaves = octaves;
+        _lacunarity = lacunarity;
+        _persistence = persistence;
+
+        _spectralWeights = new double[_octaves];
+
+        for (int i = 0; i < _octaves; i++)
+            _spectralWeights[i] = Math.pow(_lacunarity, -_persistence * i);
+
+        _lacunarityFloat = (float) _lacunarity;
+        _spectralWeightsFloat = new float[_octaves];
+
+        for (int i = 0; i < _octaves; i++)
+            _spectralWeightsFloat[i] = (float) _spectralWeights[i];
+
+        _noisePermutations = new int[512];
+        int[] _noiseTable = new int[256];
+
+        // Init. the noise table
+        for (int i = 0; i < 256; i++)
+            _noiseTable[i] = i;
+
+        // Fisher-Yates shuffle, entry i swaps with a hashed j in [0;i]
+        for (int i = 255; i > 0; i--) {
+            int j = (int) (((CoordinateHash.hash(i, 0, 0, seed) & 0xFFFFFFFFL) * (i + 1)) >>> 32);
+
+            int swap = _noiseTable[i];
+            _noiseTable[i] = _noiseTable[j];
+            _noiseTable[j] = swap;
+        }
+
+        // Finally replicate the noise permutations in the remaining 256 index positions
+        for (int i = 0; i < 256; i++)
+            _noisePermutations[i] = _noisePermutations[i + 256] = _noiseTable[i];
+    }
+
+    public static double fastFloor(double d) {
+        int i = (int) d;
+        return (d < 0 && d != i) ? i - 1 : i;
+    }
+
+    public static float fastFloor(float f) {
+        int i = (int) f;
+        return (f < 0 && f != i) ? i - 1 : i;
+    }
+
+    static double fade(double t) {
+        return t * t * t * (t * (t * 6 - 15) + 10);
+    }
+
+    //Derivative of fade, 0 at both ends of a cell
+    static double fadeDerivative(double t) {
+        return 30 * t * t * (t * (t - 2) + 1);
+    }
+
+    static double lerp(double t, double a, double b) {
+        return a + t * (b - a);
+    }
+
+    static float fade(float t) {
+        return t * t * t * (t * (t * 6 - 15) + 10);
+    }
+
+    static float lerp(float t, float a, float b) {
+        return a + t * (b - a);
+    }
+
+    public int getSeed() {
+        return _seed;
+    }
+
+    public int getOctaves() {
+        return _octaves;
+    }
+
+    public double getLACUNARITY() {
+        return _lacunarity;
+    }
+
+    public double getPersistence() {
+        return _persistence;
+    }
+}
@@ -0,0 +1,496 @@
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * A node of a composable noise graph over the pixel plane: sources (a NoiseSource, a Field,
+ * a constant) combined with value operations (scale, bias, clamp, fade, add, multiply, blend,
+ * select) and domain operations (translate, warp, turbulence). Graphs are immutable and can be
+ * evaluated from several threads at once.
+ * <p/>
+ * The graph is evaluated fused, one row of a region at a time: every node computes the row
+ * into a scratch array of row length, which its parents read before the next row starts. No
+ * node ever holds a full-size intermediate field, a recipe costs a single pass over the
+ * destination. A node that feeds several parents is evaluated once per row. As long as no warp
+ * moves the samples off the grid, NoiseSource nodes fill their row with the region method of
+ * the source, which for the Perlin noise uses the shared row kernels.
+ * <p/>
+ * The mixed field of the GenerationEngine, for example, is
+ * <pre>
+ * NoiseGraph p = NoiseGraph.field(plasma, 0, 0);
+ * NoiseGraph n = NoiseGraph.source(perlin, GenerationEngine.PERLIN_SCALE).bias(1).scale(0.5).clamp(0, 1)
+ *         .fade().bias(-0.5).scale(2);
+ * NoiseGraph c = p.multiply(n).multiply(p.bias(1)).add(p).scale(1 / 2.5).bias(1).scale(0.5).clamp(0, 1);
+ * c.add(p).scale(0.5).fill(mixed, 0, 0);
+ * </pre>
+ * which matches PlasmaGenerator.mix up to float rounding.
+ */
+public abstract class NoiseGraph {
+
+    NoiseGraph() {
+    }
+
+    //Computes this node for the samples of the block into out[0..block.length)
+    abstract void evaluate(Block block, float[] out);
+
+    /**
+     * Returns a node with the given NoiseSource sampled at (x * frequency, 0, y * frequency),
+     * in the plane y = 0 of its 3d noise like the GenerationEngine does.
+     */
+    public static NoiseGraph source(NoiseSource noise, double frequency) {
+        return new Source(noise, frequency);
+    }
+
+    /**
+     * Returns a node reading the field, the pixel (x, y) of the plane at (x - originX, y - originY)
+     * of the field. Positions outside of the field read its nearest edge pixel.
+     */
+    public static NoiseGraph field(Field field, int originX, int originY) {
+        return new FieldSource(field, originX, originY);
+    }
+
+    public static NoiseGraph constant(double value) {
+        return new Constant((float) value);
+    }
+
+    /**
+     * Returns a + control * (b - a), control is not clamped.
+     */
+    public static NoiseGraph blend(NoiseGraph a, NoiseGraph b, NoiseGraph control) {
+        return new Blend(a, b, control);
+    }
+
+    /**
+     * Returns lower where control is below threshold and upper above it. Within falloff of the
+     * threshold the two are blended with the fade curve, so the edge is smooth.
+     */
+    public static NoiseGraph select(NoiseGraph lower, NoiseGraph upper, NoiseGraph control, double threshold, double falloff) {
+        return new Select(lower, upper, control, (float) threshold, (float) falloff);
+    }
+
+    public NoiseGraph scale(double factor) {
+        return new Unary(this, Unary.SCALE, (float) factor, 0);
+    }
+
+    public NoiseGraph bias(double offset) {
+        return new Unary(this, Unary.BIAS, (float) offset, 0);
+    }
+
+    public NoiseGraph clamp(double lower, double upper) {
+        return new Unary(this, Unary.CLAMP, (float) lower, (float) upper);
+    }
+
+    /**
+     * Applies the quintic fade curve 6t^5 - 15t^4 + 10t^3 of the Perlin noise, which maps [0;1]
+     * onto itself with flat ends.
+     */
+    public NoiseGraph fade() {
+        return new Unary(this, Unary.FADE, 0, 0);
+    }
+
+    public NoiseGraph add(NoiseGraph other) {
+        return new Binary(this, other, false);
+    }
+
+    public NoiseGraph multiply(NoiseGraph other) {
+        return new Binary(this, other, true);
+    }
+
+    /**
+     * Returns this node evaluated at (x + dx, y + dy).
+     */
+    public NoiseGraph translate(double dx, double dy) {
+        return new Translate(this, dx, dy);
+    }
+
+    /**
+     * Returns this node evaluated at (x + amount * offsetX(x, y), y + amount * offsetY(x, y)).
+     */
+    public NoiseGraph warp(NoiseGraph offsetX, NoiseGraph offsetY, double amount) {
+        return new Warp(this, offsetX, offsetY, amount);
+    }
+
+    /**
+     * Returns this node with its domain warped by the given noise, the offsets along x and y
+     * taken from two distant places of the noise so they are uncorrelated.
+     *
+     * @param noise     The noise displacing the samples
+     * @param frequency Frequency the noise is sampled at, in 1/pixel
+     * @param power     Largest displacement in pixels for a noise value of 1
+     */
+    public NoiseGraph turbulence(NoiseSource noise, double frequency, double power) {
+        // Offsets that are no multiple of the lattice, as in libnoise
+        return warp(source(noise, frequency).translate(12414 / frequency / 65536, 65265 / frequency / 65536),
+                source(noise, frequency).translate(26519 / frequency / 65536, 18128 / frequency / 65536), power);
+    }
+
+    /**
+     * Returns the value at the given position.
+     */
+    public float sample(double x, double y) {
+        Block block = new Block(1);
+        block.setRow(x, y, 0, 1);
+        return block.values(this)[0];
+    }
+
+    /**
+     * Fills the whole destination with the pixels from (x0, y0) of the plane on.
+     */
+    public void fill(Field dest, int x0, int y0) {
+        fill(dest, 0, 0, x0, y0, dest.getWidth(), dest.getHeight());
+    }
+
+    /**
+     * Fills the w x h pixels at (destX, destY) of dest with the pixels from (x0, y0) of the plane
+     * on, row by row.
+     */
+    public void fill(Field dest, int destX, int destY, int x0, int y0, int w, int h) {
+        Block block = new Block(w);
+
+        for (int j = 0; j < h; j++) {
+            block.setRow(x0, y0 + j, 1, w);
+            dest.setRow(destX, destY + j, block.values(this), 0, w);
+        }
+    }
+
+    /**
+     * The samples a graph is evaluated for, a row of regularly spaced samples or, below a warp,
+     * arbitrary positions. Holds the row result of every node evaluated for it, so nodes with
+     * several parents are computed once, and recycles the scratch arrays from row to row.
+     */
+    static final class Block {
+
+        final int capacity;
+        int length;
+
+        // The row, valid while regular is true
+        boolean regular;
+        double x0;
+        double y;
+        double step;
+
+        // The positions of the samples, filled in on demand for regular rows
+        final double[] xs;
+        final double[] ys;
+        private boolean _positions;
+
+        private final IdentityHashMap<NoiseGraph, float[]> _results = new IdentityHashMap<NoiseGraph, float[]>();
+        private final IdentityHashMap<NoiseGraph, Block> _warped = new IdentityHashMap<NoiseGraph, Block>();
+        private final ArrayList<float[]> _free = new ArrayList<float[]>();
+
+        Block(int capacity) {
+            this.capacity = capacity;
+            xs = new double[capacity];
+            ys = new double[capacity];
+        }
+
+        void setRow(double x0, double y, double step, int length) {
+            reset(length);
+            regular = true;
+            this.x0 = x0;
+            this.y = y;
+            this.step = step;
+        }
+
+        //Starts over with irregular positions, which the caller writes into xs and ys
+        void setPositions(int length) {
+            reset(length);
+            regular = false;
+            _positions = true;
+        }
+
+        void fillPositions() {
+            if (_positions)
+                return;
+
+            for (int i = 0; i < length; i++) {
+                xs[i] = x0 + i * step;
+                ys[i] = y;
+            }
+            _positions = true;
+        }
+
+        //The row of the node for this block, evaluated on the first request
+        float[] values(NoiseGraph node) {
+            float[] values = _results.get(node);
+            if (values == null) {
+                values = _free.isEmpty() ? new float[capacity] : _free.remove(_free.size() - 1);
+                node.evaluate(this, values);
+                _results.put(node, values);
+            }
+            return values;
+        }
+
+        //The block of a translate or warp node below this one, reused from row to row
+        Block warped(NoiseGraph warp) {
+            Block block = _warped.get(warp);
+            if (block == null) {
+                block = new Block(capacity);
+                _warped.put(warp, block);
+            }
+            return block;
+        }
+
+        private void reset(int length) {
+            if (length > capacity)
+                throw new IllegalArgumentException("Row of " + length + " samples exceeds the block of " + capacity);
+
+            _free.addAll(_results.values());
+            _results.clear();
+            this.length = length;
+            _positions = false;
+        }
+    }
+
+    private static final class Source extends NoiseGraph {
+
+        private final NoiseSource _noise;
+        private final double _frequency;
+
+        Source(NoiseSource noise, double frequency) {
+            _noise = noise;
+            _frequency = frequency;
+        }
+
+        void evaluate(Block block, float[] out) {
+            if (block.regular) {
+                _noise.sample3dRegion(block.x0 * _frequency, 0, block.y * _frequency, block.step * _frequency, block.length, 1, 1, out);
+            } else {
+                for (int i = 0; i < block.length; i++)
+                    out[i] = (float) _noise.sample3d(block.xs[i] * _frequency, 0, block.ys[i] * _frequency);
+            }
+        }
+    }
+
+    private static final class FieldSource extends NoiseGraph {
+
+        private final Field _field;
+        private final int _originX;
+        private final int _originY;
+
+        FieldSource(Field field, int originX, int originY) {
+            _field = field;
+            _originX = originX;
+            _originY = originY;
+        }
+
+        void evaluate(Block block, float[] out) {
+            int width = _field.getWidth(), height = _field.getHeight();
+
+            if (block.regular && block.step == 1 && block.x0 == Math.floor(block.x0)) {
+                int x = (int) block.x0 - _originX, y = clamp((int) Math.floor(block.y) - _originY, height);
+                int from = Math.max(0, Math.min(block.length, -x)), to = Math.max(from, Math.min(block.length, width - x));
+
+                // The pixels inside of the field as one row copy, the rest from the edges
+                if (to > from)
+                    _field.getRow(x + from, y, out, from, to - from);
+                for (int i = 0; i < from; i++)
+                    out[i] = _field.get(0, y);
+                for (int i = to; i < block.length; i++)
+                    out[i] = _field.get(width - 1, y);
+            } else {
+                block.fillPositions();
+                for (int i = 0; i < block.length; i++)
+                    out[i] = _field.get(clamp((int) Math.floor(block.xs[i]) - _originX, width), clamp((int) Math.floor(block.ys[i]) - _originY, height));
+            }
+        }
+
+        private static int clamp(int i, int size) {
+            return Math.max(0, Math.min(size - 1, i));
+        }
+    }
+
+    private static final class Constant extends NoiseGraph {
+
+        private final float _value;
+
+        Constant(float value) {
+            _value = value;
+        }
+
+        void evaluate(Block block, float[] out) {
+            for (int i = 0; i < block.length; i++)
+                out[i] = _value;
+        }
+    }
+
+    private static final class Unary extends NoiseGraph {
+
+        static final int SCALE = 0;
+        static final int BIAS = 1;
+        static final int CLAMP = 2;
+        static final int FADE = 3;
+
+        private final NoiseGraph _input;
+        private final int _operation;
+        private final float _a;
+        private final float _b;
+
+        Unary(NoiseGraph input, int operation, float a, float b) {
+            _input = input;
+            _operation = operation;
+            _a = a;
+            _b = b;
+        }
+
+        void evaluate(Block block, float[] out) {
+            float[] in = block.values(_input);
+            int n = block.length;
+
+            switch (_operation) {
+                case SCALE:
+                    for (int i = 0; i < n; i++)
+                        out[i] = in[i] * _a;
+                    break;
+                case BIAS:
+                    for (int i = 0; i < n; i++)
+                        out[i] = in[i] + _a;
+                    break;
+                case CLAMP:
+                    for (int i = 0; i < n; i++)
+                        out[i] = Math.max(_a, Math.min(_b, in[i]));
+                    break;
+                default:
+                    for (int i = 0; i < n; i++)
+                        out[i] = LatticeNoise.fade(in[i]);
+            }
+        }
+    }
+
+    private static final class Binary extends NoiseGraph {
+
+        private final NoiseGraph _a;
+        private final NoiseGraph _b;
+        private final boolean _multiply;
+
+        Binary(NoiseGraph a, NoiseGraph b, boolean multiply) {
+            _a = a;
+            _b = b;
+            _multiply = multiply;
+        }
+
+        void evaluate(Block block, float[] out) {
+            float[] a = block.values(_a), b = block.values(_b);
+
+            if (_multiply) {
+                for (int i = 0; i < block.length; i++)
+                    out[i] = a[i] * b[i];
+            } else {
+                for (int i = 0; i < block.length; i++)
+                    out[i] = a[i] + b[i];
+            }
+        }
+    }
+
+    private static final class Blend extends NoiseGraph {
+
+        private final NoiseGraph _a;
+        private final NoiseGraph _b;
+        private final NoiseGraph _control;
+
+        Blend(NoiseGraph a, NoiseGraph b, NoiseGraph control) {
+            _a = a;
+            _b = b;
+            _control = control;
+        }
+
+        void evaluate(Block block, float[] out) {
+            float[] a = block.values(_a), b = block.values(_b), t = block.values(_control);
+
+            for (int i = 0; i < block.length; i++)
+                out[i] = LatticeNoise.lerp(t[i], a[i], b[i]);
+        }
+    }
+
+    private static final class Select extends NoiseGraph {
+
+        private final NoiseGraph _lower;
+        private final NoiseGraph _upper;
+        private final NoiseGraph _control;
+        private final float _threshold;
+        private final float _falloff;
+
+        Select(NoiseGraph lower, NoiseGraph upper, NoiseGraph control, float threshold, float falloff) {
+            _lower = lower;
+            _upper = upper;
+            _control = control;
+            _threshold = threshold;
+            _falloff = falloff;
+        }
+
+        void evaluate(Block block, float[] out) {
+            float[] lower = block.values(_lower), upper = block.values(_upper), control = block.values(_control);
+
+            for (int i = 0; i < block.length; i++) {
+                float c = control[i];
+
+                if (c <= _threshold - _falloff) {
+                    out[i] = lower[i];
+                } else if (c >= _threshold + _falloff) {
+                    out[i] = upper[i];
+                } else {
+                    float t = (c - (_threshold - _falloff)) / (2 * _falloff);
+                    out[i] = LatticeNoise.lerp(LatticeNoise.fade(t), lower[i], upper[i]);
+                }
+            }
+        }
+    }
+
+    private static final class Translate extends NoiseGraph {
+
+        private final NoiseGraph _input;
+        private final double _dx;
+        private final double _dy;
+
+        Translate(NoiseGraph input, double dx, double dy) {
+            _input = input;
+            _dx = dx;
+            _dy = dy;
+        }
+
+        void evaluate(Block block, float[] out) {
+            Block translated = block.warped(this);
+
+            // A shifted row stays a row, so the sources below keep their region methods
+            if (block.regular) {
+                translated.setRow(block.x0 + _dx, block.y + _dy, block.step, block.length);
+            } else {
+                translated.setPositions(block.length);
+                for (int i = 0; i < block.length; i++) {
+                    translated.xs[i] = block.xs[i] + _dx;
+                    translated.ys[i] = block.ys[i] + _dy;
+                }
+            }
+
+            System.arraycopy(translated.values(_input), 0, out, 0, block.length);
+        }
+    }
+
+    private static final class Warp extends NoiseGraph {
+
+        private final NoiseGraph _input;
+        private final NoiseGraph _offsetX;
+        private final NoiseGraph _offsetY;
+        private final double _amount;
+
+        Warp(NoiseGraph input, NoiseGraph offsetX, NoiseGraph offsetY, double amount) {
+            _input = input;
+            _offsetX = offsetX;
+            _offsetY = offsetY;
+            _amount = amount;
+        }
+
+        void evaluate(Block block, float[] out) {
+            float[] dx = block.values(_offsetX), dy = block.values(_offsetY);
+            Block warped = block.warped(this);
+
+            block.fillPositions();
+            warped.setPositions(block.length);
+            for (int i = 0; i < block.length; i++) {
+                warped.xs[i] = block.xs[i] + _amount * dx[i];
+                warped.ys[i] = block.ys[i] + _amount * dy[i];
+            }
+
+            System.arraycopy(warped.values(_input), 0, out, 0, block.length);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+import java.lang.reflect.Constructor;
+
+/**
+ * Row kernels of the Perlin region methods that evaluate several samples at once, in double
+ * and in single precision. The only
+ * implementation, VectorNoiseKernels, is built on the incubating jdk.incubator.vector module
+ * and is loaded reflectively, so the generator still runs on the scalar path when the JVM is
+ * started without "--add-modules jdk.incubator.vector", when the hardware has no usable vector
+ * width, or when it is disabled with -Dplasma.vector=false.
+ * <p/>
+ * The kernels perform the same floating point operations in the same order as the scalar
+ * loops, so both paths produce identical values. An instance holds scratch space for one row
+ * and must not be shared between threads.
+ */
+abstract class NoiseKernels {
+
+    private static final Constructor<? extends NoiseKernels> VECTOR = findVectorKernels();
+
+    /**
+     * Returns new kernels for rows of up to length samples, or null if the vector path is
+     * not available.
+     */
+    static NoiseKernels vector(int length) {
+        if (VECTOR == null)
+            return null;
+
+        try {
+            return VECTOR.newInstance(length);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create the vector kernels", e);
+        }
+    }
+
+    /**
+     * Returns the number of samples the vector kernels evaluate at once, 0 if they are not available.
+     */
+    static int getVectorLanes() {
+        NoiseKernels kernels = vector(1);
+        return kernels != null ? kernels.getLanes() : 0;
+    }
+
+    /**
+     * Returns the number of samples the single precision vector kernels evaluate at once, 0 if
+     * they are not available.
+     */
+    static int getVectorFloatLanes() {
+        NoiseKernels kernels = vector(1);
+        return kernels != null ? kernels.getFloatLanes() : 0;
+    }
+
+    private static Constructor<? extends NoiseKernels> findVectorKernels() {
+        if (!Boolean.parseBoolean(System.getProperty("plasma.vector", "true")))
+            return null;
+
+        try {
+            Constructor<? extends NoiseKernels> constructor =
+                    Class.forName("VectorNoiseKernels").asSubclass(NoiseKernels.class).getDeclaredConstructor(int.class);
+            // Creating an instance links the class against jdk.incubator.vector, which fails if
+            // the module is missing
+            constructor.newInstance(1);
+            return constructor;
+        } catch (ReflectiveOperationException e) {
+            return null;
+        } catch (LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Adds one octave of PerlinNoise3D.noise3d times weight to result[0..length) for a row of
+     * samples at a fixed lattice row Y, slice Z. The lattice columns, the columns following
+     * them, fractional x parts and their fade values are read from cellX, cellX1, fracX and fadeX
+     * starting at offset. Y1 and Z1 are the row and slice following Y and Z, these are passed
+     * separately since they wrap around on a periodic lattice.
+     */
+    abstract void octave3d(int[] permutations, int[] cellX, int[] cellX1, double[] fracX, double[] fadeX, int offset, int length,
+                           int Y, int Y1, int Z, int Z1, double yf, double zf, double v, double w, double weight, double[] result);
+
+    /**
+     * Adds one octave of PerlinNoise2D.noise2d times weight to result[0..length) for a row of
+     * samples at a fixed lattice row Y, see octave3d.
+     */
+    abstract void octave2d(int[] permutations, int[] cellX, int[] cellX1, double[] fracX, double[] fadeX, int offset, int length,
+                           int Y, int Y1, double yf, double v, double weight, double[] result);
+
+    /**
+     * Adds one octave of PerlinNoise3D.noise3f times weight to result[0..length), the single
+     * precision version of octave3d.
+     */
+    abstract void octave3f(int[] permutations, int[] cellX, int[] cellX1, float[] fracX, float[] fadeX, int offset, int length,
+                           int Y, int Y1, int Z, int Z1, float yf, float zf, float v, float w, float weight, float[] result);
+
+    /**
+     * Adds one octave of PerlinNoise2D.noise2f times weight to result[0..length), the single
+     * precision version of octave2d.
+     */
+    abstract void octave2f(int[] permutations, int[] cellX, int[] cellX1, float[] fracX, float[] fadeX, int offset, int length,
+                           int Y, int Y1, float yf, float v, float weight, float[] result);
+
+    /**
+     * Returns the number of samples evaluated at once.
+     */
+    abstract int getLanes();
+
+    /**
+     * Returns the number of samples evaluated at once by the single precision kernels.
+     */
+    abstract int getFloatLanes();
+}
@@ -0,0 +1,27 @@
+/**
+ * A source of coherent noise in two and three dimensions, usually several octaves of a basic
+ * noise added up as fractional Brownian motion. Every octave of the implementations lies
+ * roughly in [-1;1], so does their weighted sum divided by the sum of the spectral weights.
+ * Two exceptions are noted at the implementations: Worley noise reaches up to about 1.45, and
+ * the 2d Perlin noise keeps the range [-2;2] of its original implementation.
+ * Implementations are immutable and can be shared between threads.
+ * <p/>
+ * The region methods fill a grid of samples at once. They return the same values as the
+ * single sample methods, but may share work between neighbouring samples.
+ */
+public interface NoiseSource {
+
+    double sample2d(double x, double y);
+
+    double sample3d(double x, double y, double z);
+
+    /**
+     * Fills dest[j * sizeX + i] with sample2d(x0 + i * step, y0 + j * step).
+     */
+    void sample2dRegion(double x0, double y0, double step, int sizeX, int sizeY, float[] dest);
+
+    /**
+     * Fills dest[(k * sizeY + j) * sizeX + i] with sample3d(x0 + i * step, y0 + j * step, z0 + k * step).
+     */
+    void sample3dRegion(double x0, double y0, double z0, double step, int sizeX, int sizeY, int sizeZ, float[] dest);
+}
@@ -0,0 +1,56 @@
+/**
+ * The Perlin noise as a NoiseSource: the 2d methods are the default fBm2d of a PerlinNoise2D,
+ * the 3d methods the default fBm3d of a PerlinNoise3D with the same settings. The region
+ * methods use the vectorised region methods of those, periodicity carries over. An octave of
+ * the 2d noise lies in [-2;2], as in the original PerlinNoise2D, one of the 3d noise roughly
+ * in [-1;1].
+ */
+public class PerlinNoise implements NoiseSource {
+
+    private final PerlinNoise2D _noise2d;
+    private final PerlinNoise3D _noise3d;
+
+    /**
+     * @param seed        The seed value
+     * @param octaves     The amount of octaves added by the sample methods
+     * @param lacunarity  The frequency multiplier between two octaves
+     * @param persistence The exponent H of the spectral weights lacunarity^(-H * octave)
+     */
+    public PerlinNoise(int seed, int octaves, double lacunarity, double persistence) {
+        this(new PerlinNoise3D(seed, octaves, lacunarity, persistence));
+    }
+
+    /**
+     * Wraps an existing 3d noise and adds a 2d noise with the same seed, settings and the
+     * periods along x and y.
+     */
+    public PerlinNoise(PerlinNoise3D noise3d) {
+        _noise3d = noise3d;
+        _noise2d = new PerlinNoise2D(noise3d.getSeed(), noise3d.getOctaves(), noise3d.getLACUNARITY(), noise3d.getPersistence(),
+                noise3d.getPeriodX(), noise3d.getPeriodY());
+    }
+
+    public double sample2d(double x, double y) {
+        return _noise2d.fBm2d(x, y);
+    }
+
+    public double sample3d(double x, double y, double z) {
+        return _noise3d.fBm3d(x, y, z);
+    }
+
+    public void sample2dRegion(double x0, double y0, double step, int sizeX, int sizeY, float[] dest) {
+        _noise2d.fBm2dRegion(x0, y0, step, sizeX, sizeY, dest);
+    }
+
+    public void sample3dRegion(double x0, double y0, double z0, double step, int sizeX, int sizeY, int sizeZ, float[] dest) {
+        _noise3d.fBm3dRegion(x0, y0, z0, step, sizeX, sizeY, sizeZ, dest);
+    }
+
+    public PerlinNoise2D getNoise2d() {
+        return _noise2d;
+    }
+
+    public PerlinNoise3D getNoise3d() {
+        return _noise3d;
+    }
+}
@@ -14,57 +14,108 @@
  * limitations under the License.
  */
 
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
 /**
  * Improved Perlin noise3d based on the reference implementation by Ken Perlin.
+ * <p/>
+ * The octave count, lacunarity and persistence are fixed when the generator is created and the
+ * spectral weights are computed up front, so instances are immutable and thread-safe.
+ * <p/>
+ * The methods ending in 2f are a single precision version of the 2d ones, with float inputs,
+ * outputs and gradient math. Over the domain described in PerlinNoise3D, fBm2f deviates from
+ * fBm2d by at most 8.5e-6 with 1 octave and 2.4e-5 with 3 octaves. noise2d jumps at the lattice
+ * lines, though, so a position that rounds into the neighbouring cell can differ a lot: with 9
+ * octaves 0.3% of the samples deviate by more than 1e-4, by up to 0.15.
+ * <p/>
+ * Optionally the noise is periodic along x and/or y, as described in PerlinNoise3D. The Lod
+ * methods cull the octaves by the sample spacing, also as described there.
  *
  * @author Benjamin Glatzel <benjamin.glatzel@me.com>
  * @author Florian Rohm
  */
-public class PerlinNoise2D {
+public class PerlinNoise2D extends LatticeNoise {
+
+    public static final double DEFAULT_LACUNARITY = 2.1379201;
+    public static final double DEFAULT_PERSISTENCE = 0.836281;
+    public static final int DEFAULT_OCTAVES = 1;
 
-    private static double LACUNARITY = 2.1379201;
-    private static double H = 0.836281;
+    private final double _periodX;
+    private final double _periodY;
 
-    private double[] _spectralWeights2d;
+    // Lattice period and frequency of every octave and axis at [2 * octave + axis], a lattice
+    // period of 0 means the axis is not periodic. Null if no axis is periodic.
+    private final int[] _latticePeriods;
+    private final double[] _frequencies;
+    private final float[] _frequenciesFloat;
 
-    private final int[] _noisePermutations;
-    private boolean _recomputeSpectralWeights2d = true;
-    private int _octaves = 1;
+    // log_lacunarity of the highest frequency of every octave, for the level of detail
+    private final double[] _lodOrders;
 
     /**
-     * Init. a new generator with a given seed value.
+     * Init. a new generator with a given seed value and the default settings.
      *
      * @param seed The seed value
      */
     public PerlinNoise2D(int seed) {
-        FastRandom rand = new FastRandom(seed);
-
-        _noisePermutations = new int[512];
-        int[] _noiseTable = new int[256];
-
-        // Init. the noise3d table
-        for (int i = 0; i < 256; i++)
-            _noiseTable[i] = i;
+        this(seed, DEFAULT_OCTAVES, DEFAULT_LACUNARITY, DEFAULT_PERSISTENCE);
+    }
 
-        // Shuffle the array
-        for (int i = 0; i < 256; i++) {
-            int j = rand.randomInt() % 256;
-            j = (j < 0) ? -j : j;
+    /**
+     * Init. a new generator with a given seed value and fBm settings. The settings can not be
+     * changed afterwards, so a single instance can be shared between threads.
+     *
+     * @param seed        The seed value
+     * @param octaves     The amount of octaves added by the fBm functions
+     * @param lacunarity  The frequency multiplier between two octaves
+     * @param persistence The exponent H of the spectral weights lacunarity^(-H * octave)
+     */
+    public PerlinNoise2D(int seed, int octaves, double lacunarity, double persistence) {
+        this(seed, octaves, lacunarity, persistence, 0, 0);
+    }
 
-            int swap = _noiseTable[i];
-            _noiseTable[i] = _noiseTable[j];
-            _noiseTable[j] = swap;
+    /**
+     * Init. a new generator whose default fBm noise repeats with the given periods. A period
+     * of 0 leaves the axis aperiodic.
+     *
+     * @param seed        The seed value
+     * @param octaves     The amount of octaves added by the fBm functions
+     * @param lacunarity  The frequency multiplier between two octaves
+     * @param persistence The exponent H of the spectral weights lacunarity^(-H * octave)
+     * @param periodX     Period along the x-axis, 0 for none
+     * @param periodY     Period along the y-axis, 0 for none
+     */
+    public PerlinNoise2D(int seed, int octaves, double lacunarity, double persistence, double periodX, double periodY) {
+        super(seed, octaves, lacunarity, persistence);
+
+        _periodX = PerlinNoise3D.checkPeriod(periodX);
+        _periodY = PerlinNoise3D.checkPeriod(periodY);
+
+        if (periodX > 0 || periodY > 0) {
+            _latticePeriods = new int[2 * _octaves];
+            _frequencies = new double[2 * _octaves];
+            _frequenciesFloat = new float[2 * _octaves];
+
+            double[] periods = {periodX, periodY};
+            for (int i = 0; i < 2 * _octaves; i++) {
+                _latticePeriods[i] = PerlinNoise3D.cellsPerPeriod(periods[i % 2], Math.pow(_lacunarity, i / 2));
+                _frequencies[i] = _latticePeriods[i] == 0 ? Math.pow(_lacunarity, i / 2) : _latticePeriods[i] / periods[i % 2];
+                _frequenciesFloat[i] = (float) _frequencies[i];
+            }
+        } else {
+            _latticePeriods = null;
+            _frequencies = null;
+            _frequenciesFloat = null;
         }
 
-        // Finally replicate the noise3d permutations in the remaining 256 index positions
-        for (int i = 0; i < 256; i++)
-            _noisePermutations[i] = _noisePermutations[i + 256] = _noiseTable[i];
+        _lodOrders = new double[_octaves];
 
-    }
-
-    public static double fastFloor(double d) {
-            int i = (int) d;
-            return (d < 0 && d != i) ? i - 1 : i;
+        for (int i = 0; i < _octaves; i++) {
+            _lodOrders[i] = i;
+            if (_frequencies != null)
+                _lodOrders[i] = Math.log(Math.max(_frequencies[2 * i], _frequencies[2 * i + 1])) / Math.log(_lacunarity);
+        }
     }
 
     /**
@@ -82,15 +133,15 @@ public class PerlinNoise2D {
 
         double u = fade(x), v = fade(y);
 
-        double[] g00=grad2d(X,Y);
-        double[] g01=grad2d(X+1,Y);
-        double[] g10=grad2d(X,Y+1);
-        double[] g11=grad2d(X+1,Y+1);
+        int h00 = h8(X, Y);
+        int h01 = h8(X + 1, Y);
+        int h10 = h8(X, Y + 1);
+        int h11 = h8(X + 1, Y + 1);
 
-        double w00=g00[0]*x+g00[1]*y;
-        double w01=g01[0]*x+g01[1]*y;
-        double w10=g10[0]*x+g10[1]*y;
-        double w11=g11[0]*x+g11[1]*y;
+        double w00 = gradX(h00) * x + gradY(h00) * y;
+        double w01 = gradX(h01) * x + gradY(h01) * y;
+        double w10 = gradX(h10) * x + gradY(h10) * y;
+        double w11 = gradX(h11) * x + gradY(h11) * y;
 
         double w0=lerp(u,w00,w01);
         double w1=lerp(u,w10,w11);
@@ -105,141 +156,590 @@ public class PerlinNoise2D {
      * @param y Position on the y-axi
      * @return The fBm2d value
      */
-    public double fBm2d(double x, double y, double LACUNARITY, double H) {
+    public double fBm2d(double x, double y, double lacunarity, double persistence) {
+        //lacunarity^(-persistence * i) as a running product, the stored weights for the own settings
+        boolean own = lacunarity == _lacunarity && persistence == _persistence;
+        double decay = Math.pow(lacunarity, -persistence);
+        double weight = 1.0;
         double result = 0.0;
 
-        if (_recomputeSpectralWeights2d) {
-            _spectralWeights2d = new double[_octaves];
-
-            for (int i = 0; i < _octaves; i++)
-                _spectralWeights2d[i] = Math.pow(LACUNARITY, -H * i);
+        for (int i = 0; i < _octaves; i++) {
+            result += noise2d(x, y) * (own ? _spectralWeights[i] : weight);
+            weight *= decay;
 
-            _recomputeSpectralWeights2d = false;
+            x *= lacunarity;
+            y *= lacunarity;
         }
 
-        for (int i = 0; i < _octaves; i++) {
-            result += noise2d(x, y) * _spectralWeights2d[i];
+        return result;
+    }
 
-            x *= LACUNARITY;
-            y *= LACUNARITY;
+    public double fBm2d(double x, double z) {    //default noise
+        return fBm2d(x, z, _spectralWeights);
+    }
+
+    /**
+     * Returns the default fBm2d noise with only the octaves a grid of the given sample spacing
+     * can represent, see PerlinNoise3D.fBm3dLod.
+     *
+     * @param x    Position on the x-axis
+     * @param y    Position on the y-axis
+     * @param step Distance between two neighbouring samples
+     * @return The fBm2d value
+     */
+    public double fBm2dLod(double x, double y, double step) {
+        return fBm2d(x, y, PerlinNoise3D.lodWeights(_spectralWeights, _lodOrders, _lacunarity, step));
+    }
+
+    /**
+     * Returns the number of octaves the Lod methods evaluate for the given sample spacing.
+     */
+    public int getLodOctaves(double step) {
+        return PerlinNoise3D.lodWeights(_spectralWeights, _lodOrders, _lacunarity, step).length;
+    }
+
+    //The default fBm2d with as many octaves as there are weights
+    private double fBm2d(double x, double z, double[] weights) {
+        if (_latticePeriods != null)
+            return periodicFBm2d(x, z, weights);
+
+        double result = 0.0;
+
+        for (int i = 0; i < weights.length; i++) {
+            result += noise2d(x, z) * weights[i];
+
+            x *= _lacunarity;
+            z *= _lacunarity;
         }
 
         return result;
     }
 
-    public double fBm2d(double x, double z) {    //default noise
+    private double periodicFBm2d(double x, double y, double[] weights) {
         double result = 0.0;
 
-        if (_recomputeSpectralWeights2d) {
-            _spectralWeights2d = new double[_octaves];
+        for (int i = 0; i < weights.length; i++)
+            result += noise2d(x * _frequencies[2 * i], y * _frequencies[2 * i + 1], i) * weights[i];
 
-            for (int i = 0; i < _octaves; i++)
-                _spectralWeights2d[i] = Math.pow(LACUNARITY, -H * i);
+        return result;
+    }
+
+    //noise2d with the lattice wrapped to the lattice periods of the given octave
+    private double noise2d(double x, double y, int octave) {
+        int floorX = (int) fastFloor(x), floorY = (int) fastFloor(y);
+        int X = PerlinNoise3D.cell(floorX, latticePeriod(octave, 0)), X1 = PerlinNoise3D.cell(floorX + 1, latticePeriod(octave, 0));
+        int Y = PerlinNoise3D.cell(floorY, latticePeriod(octave, 1)), Y1 = PerlinNoise3D.cell(floorY + 1, latticePeriod(octave, 1));
+
+        x -= fastFloor(x);
+        y -= fastFloor(y);
 
-            _recomputeSpectralWeights2d = false;
+        double u = fade(x), v = fade(y);
+
+        int h00 = h8(X, Y);
+        int h01 = h8(X1, Y);
+        int h10 = h8(X, Y1);
+        int h11 = h8(X1, Y1);
+
+        double w00 = gradX(h00) * x + gradY(h00) * y;
+        double w01 = gradX(h01) * x + gradY(h01) * y;
+        double w10 = gradX(h10) * x + gradY(h10) * y;
+        double w11 = gradX(h11) * x + gradY(h11) * y;
+
+        return lerp(v, lerp(u, w00, w01), lerp(u, w10, w11));
+    }
+
+    /**
+     * Returns the noise2d value at the given position and stores its gradient, the partial
+     * derivatives along x and y, in gradient[0..1]. Like noise2d it dots every corner gradient
+     * with the offset from the lower corner of the cell, so the noise jumps at the lattice lines
+     * and the gradient is exact inside a cell.
+     *
+     * @param x        Position on the x-axis
+     * @param y        Position on the y-axis
+     * @param gradient Receives the gradient, at least 2 long
+     * @return The noise2d value
+     */
+    public double noise2dGradient(double x, double y, double[] gradient) {
+        gradient[0] = gradient[1] = 0;
+        return noise2dGradient(x, y, 0, 0, 1, 1, 1, gradient);
+    }
+
+    /**
+     * Returns the default fBm2d value at the given position, the same as fBm2d(x, y), and
+     * stores its gradient in gradient[0..1], see PerlinNoise3D.fBm3dGradient.
+     *
+     * @param x        Position on the x-axis
+     * @param y        Position on the y-axis
+     * @param gradient Receives the gradient, at least 2 long
+     * @return The fBm2d value
+     */
+    public double fBm2dGradient(double x, double y, double[] gradient) {
+        return fBm2dGradient(x, y, _spectralWeights, gradient);
+    }
+
+    /**
+     * Returns fBm2dLod(x, y, step) and stores its gradient in gradient[0..1], see
+     * PerlinNoise3D.fBm3dLodGradient.
+     *
+     * @param x        Position on the x-axis
+     * @param y        Position on the y-axis
+     * @param step     Distance between two neighbouring samples
+     * @param gradient Receives the gradient, at least 2 long
+     * @return The fBm2dLod value
+     */
+    public double fBm2dLodGradient(double x, double y, double step, double[] gradient) {
+        return fBm2dGradient(x, y, PerlinNoise3D.lodWeights(_spectralWeights, _lodOrders, _lacunarity, step), gradient);
+    }
+
+    //fBm2dGradient with as many octaves as there are weights
+    private double fBm2dGradient(double x, double y, double[] weights, double[] gradient) {
+        gradient[0] = gradient[1] = 0;
+        double result = 0.0;
+
+        if (_latticePeriods != null) {
+            for (int i = 0; i < weights.length; i++) {
+                double fx = _frequencies[2 * i], fy = _frequencies[2 * i + 1];
+                result += noise2dGradient(x * fx, y * fy, latticePeriod(i, 0), latticePeriod(i, 1),
+                        weights[i], fx, fy, gradient) * weights[i];
+            }
+            return result;
         }
 
-        for (int i = 0; i < _octaves; i++) {
-            result += noise2d(x, z) * _spectralWeights2d[i];
+        double frequency = 1;
+
+        for (int i = 0; i < weights.length; i++) {
+            result += noise2dGradient(x, y, 0, 0, weights[i], frequency, frequency, gradient) * weights[i];
 
-            x *= LACUNARITY;
-            z *= LACUNARITY;
+            x *= _lacunarity;
+            y *= _lacunarity;
+            frequency *= _lacunarity;
         }
 
         return result;
     }
 
+    //noise2d with the lattice wrapped to the given lattice periods, 0 for none. Adds its gradient
+    //times weight and the frequency of each axis to gradient.
+    private double noise2dGradient(double x, double y, int periodX, int periodY,
+                                   double weight, double frequencyX, double frequencyY, double[] gradient) {
+        int floorX = (int) fastFloor(x), floorY = (int) fastFloor(y);
+        int X = PerlinNoise3D.cell(floorX, periodX), X1 = PerlinNoise3D.cell(floorX + 1, periodX);
+        int Y = PerlinNoise3D.cell(floorY, periodY), Y1 = PerlinNoise3D.cell(floorY + 1, periodY);
+
+        x -= fastFloor(x);
+        y -= fastFloor(y);
+
+        double u = fade(x), v = fade(y);
+
+        int h00 = h8(X, Y);
+        int h01 = h8(X1, Y);
+        int h10 = h8(X, Y1);
+        int h11 = h8(X1, Y1);
 
-    private static double fade(double t) {
-        return t * t * t * (t * (t * 6 - 15) + 10);
+        double gx00 = GRAD_X[h00 & GRAD_MASK], gy00 = GRAD_X[(h00 >> 2) & GRAD_MASK];
+        double gx01 = GRAD_X[h01 & GRAD_MASK], gy01 = GRAD_X[(h01 >> 2) & GRAD_MASK];
+        double gx10 = GRAD_X[h10 & GRAD_MASK], gy10 = GRAD_X[(h10 >> 2) & GRAD_MASK];
+        double gx11 = GRAD_X[h11 & GRAD_MASK], gy11 = GRAD_X[(h11 >> 2) & GRAD_MASK];
+
+        double w00 = gx00 * x + gy00 * y;
+        double w01 = gx01 * x + gy01 * y;
+        double w10 = gx10 * x + gy10 * y;
+        double w11 = gx11 * x + gy11 * y;
+
+        double w0 = lerp(u, w00, w01), w1 = lerp(u, w10, w11);
+
+        // Change of the interpolation weights plus the interpolated gradients of the corners
+        double dx = fadeDerivative(x) * lerp(v, w01 - w00, w11 - w10) + lerp(v, lerp(u, gx00, gx01), lerp(u, gx10, gx11));
+        double dy = fadeDerivative(y) * (w1 - w0) + lerp(v, lerp(u, gy00, gy01), lerp(u, gy10, gy11));
+
+        gradient[0] += weight * frequencyX * dx;
+        gradient[1] += weight * frequencyY * dy;
+
+        return lerp(v, w0, w1);
     }
 
-    private static double lerp(double t, double a, double b) {
-        return a + t * (b - a);
+    /**
+     * Returns the noise2d value at the given position, computed in single precision.
+     *
+     * @param x Position on the x-axis
+     * @param y Position on the y-axis
+     * @return The noise value
+     */
+    public float noise2f(float x, float y) {
+        int X = (int) fastFloor(x) & 255, Y = (int) fastFloor(y) & 255;
+
+        x -= fastFloor(x);
+        y -= fastFloor(y);
+
+        float u = fade(x), v = fade(y);
+
+        int h00 = h8(X, Y);
+        int h01 = h8(X + 1, Y);
+        int h10 = h8(X, Y + 1);
+        int h11 = h8(X + 1, Y + 1);
+
+        float w00 = gradXf(h00) * x + gradYf(h00) * y;
+        float w01 = gradXf(h01) * x + gradYf(h01) * y;
+        float w10 = gradXf(h10) * x + gradYf(h10) * y;
+        float w11 = gradXf(h11) * x + gradYf(h11) * y;
+
+        float w0 = lerp(u, w00, w01);
+        float w1 = lerp(u, w10, w11);
+
+        return lerp(v, w0, w1);
     }
 
-    private double[] grad2d(int x, int y) {
-        double[] h = hash(x,y);
-        double[] result = new double[2];
-        result[0]=2*h[0]-1;
-        result[1]=2*h[1]-1;
+    /**
+     * Returns the default fBm2d noise at the given position, computed in single precision.
+     */
+    public float fBm2f(float x, float z) {
+        if (_latticePeriods != null)
+            return periodicFBm2f(x, z);
+
+        float result = 0;
+
+        for (int i = 0; i < _octaves; i++) {
+            result += noise2f(x, z) * _spectralWeightsFloat[i];
+
+            x *= _lacunarityFloat;
+            z *= _lacunarityFloat;
+        }
+
         return result;
     }
 
-    private int h8 (int u, int v) {
-        u = u & 0xFF;
-        v = v & 0xFF;
-        return _noisePermutations[_noisePermutations[u]+v];
+
+    private float periodicFBm2f(float x, float y) {
+        float result = 0;
+
+        for (int i = 0; i < _octaves; i++)
+            result += noise2f(x * _frequenciesFloat[2 * i], y * _frequenciesFloat[2 * i + 1], i) * _spectralWeightsFloat[i];
+
+        return result;
+    }
+
+    //noise2f with the lattice wrapped to the lattice periods of the given octave
+    private float noise2f(float x, float y, int octave) {
+        int floorX = (int) fastFloor(x), floorY = (int) fastFloor(y);
+        int X = PerlinNoise3D.cell(floorX, latticePeriod(octave, 0)), X1 = PerlinNoise3D.cell(floorX + 1, latticePeriod(octave, 0));
+        int Y = PerlinNoise3D.cell(floorY, latticePeriod(octave, 1)), Y1 = PerlinNoise3D.cell(floorY + 1, latticePeriod(octave, 1));
+
+        x -= fastFloor(x);
+        y -= fastFloor(y);
+
+        float u = fade(x), v = fade(y);
+
+        int h00 = h8(X, Y);
+        int h01 = h8(X1, Y);
+        int h10 = h8(X, Y1);
+        int h11 = h8(X1, Y1);
+
+        float w00 = gradXf(h00) * x + gradYf(h00) * y;
+        float w01 = gradXf(h01) * x + gradYf(h01) * y;
+        float w10 = gradXf(h10) * x + gradYf(h10) * y;
+        float w11 = gradXf(h11) * x + gradYf(h11) * y;
+
+        return lerp(v, lerp(u, w00, w01), lerp(u, w10, w11));
+    }
+
+    /**
+     * Fills a region of sizeX * sizeY samples with the default fBm2d noise. Sample (i, j) is
+     * taken at (x0 + i * step, y0 + j * step) and stored row-major at dest[j * sizeX + i].
+     * The values are identical to calling fBm2d(double, double) for every sample, but the
+     * lattice columns, x fade values and permutation lookups are shared along each row, and
+     * several samples are evaluated at once if the vector kernels are available (see NoiseKernels).
+     *
+     * @param x0    Position of the first sample on the x-axis
+     * @param y0    Position of the first sample on the y-axis
+     * @param step  Distance between two neighbouring samples
+     * @param sizeX Number of samples per row
+     * @param sizeY Number of rows
+     * @param dest  The destination array
+     */
+    public void fBm2dRegion(double x0, double y0, double step, int sizeX, int sizeY, float[] dest) {
+        if (dest.length < sizeX * sizeY)
+            throw new IllegalArgumentException("Destination holds " + dest.length + " values, region needs " + sizeX * sizeY);
+
+        fBm2dRegion(x0, y0, step, sizeX, sizeY, _spectralWeights, dest, null);
+    }
+
+    /**
+     * Fills a region of sizeX * sizeY samples with the default fBm2d noise, starting at the
+     * current position of the buffer. The position of the buffer is left unchanged.
+     *
+     * @see #fBm2dRegion(double, double, double, int, int, float[])
+     */
+    public void fBm2dRegion(double x0, double y0, double step, int sizeX, int sizeY, FloatBuffer dest) {
+        if (dest.remaining() < sizeX * sizeY)
+            throw new IllegalArgumentException("Destination holds " + dest.remaining() + " values, region needs " + sizeX * sizeY);
+
+        fBm2dRegion(x0, y0, step, sizeX, sizeY, _spectralWeights, null, dest.duplicate());
+    }
+
+    /**
+     * Fills a region like fBm2dRegion(double, double, double, int, int, float[]), but only with
+     * the octaves a grid with the spacing step can represent. The values are identical to calling
+     * fBm2dLod for every sample with the same step.
+     */
+    public void fBm2dLodRegion(double x0, double y0, double step, int sizeX, int sizeY, float[] dest) {
+        if (dest.length < sizeX * sizeY)
+            throw new IllegalArgumentException("Destination holds " + dest.length + " values, region needs " + sizeX * sizeY);
+
+        fBm2dRegion(x0, y0, step, sizeX, sizeY, PerlinNoise3D.lodWeights(_spectralWeights, _lodOrders, _lacunarity, step), dest, null);
+    }
+
+    private void fBm2dRegion(double x0, double y0, double step, int sizeX, int sizeY, double[] weights, float[] array, FloatBuffer buffer) {
+        int octaves = weights.length;
+
+        // The x coordinates are the same for every row, so the lattice column, the fractional
+        // part and its fade value are computed once per octave for the whole region
+        int[] cellX = new int[octaves * sizeX];
+        int[] cellX1 = new int[octaves * sizeX];
+        double[] fracX = new double[octaves * sizeX];
+        double[] fadeX = new double[octaves * sizeX];
+
+        for (int i = 0; i < sizeX; i++) {
+            double base = x0 + i * step, x = base;
+
+            for (int o = 0; o < octaves; o++) {
+                if (_frequencies != null)
+                    x = base * _frequencies[2 * o];
+
+                int k = o * sizeX + i, floor = (int) fastFloor(x);
+                cellX[k] = PerlinNoise3D.cell(floor, latticePeriod(o, 0));
+                cellX1[k] = PerlinNoise3D.cell(floor + 1, latticePeriod(o, 0));
+                fracX[k] = x - fastFloor(x);
+                fadeX[k] = fade(fracX[k]);
+
+                x *= _lacunarity;
+            }
+        }
+
+        double[] result = new double[sizeX];
+        float[] row = new float[sizeX];
+        NoiseKernels vector = NoiseKernels.vector(sizeX);
+
+        for (int j = 0; j < sizeY; j++) {
+            double baseY = y0 + j * step, y = baseY;
+            Arrays.fill(result, 0.0);
+
+            for (int o = 0; o < octaves; o++) {
+                if (_frequencies != null)
+                    y = baseY * _frequencies[2 * o + 1];
+
+                int floorY = (int) fastFloor(y);
+                int Y = PerlinNoise3D.cell(floorY, latticePeriod(o, 1)), Y1 = PerlinNoise3D.cell(floorY + 1, latticePeriod(o, 1));
+                double yf = y - fastFloor(y);
+                double v = fade(yf);
+                double weight = weights[o];
+
+                if (vector != null) {
+                    vector.octave2d(_noisePermutations, cellX, cellX1, fracX, fadeX, o * sizeX, sizeX, Y, Y1, yf, v, weight, result);
+                } else {
+                    int lastX = -1;
+                    double gx00 = 0, gy00 = 0, gx01 = 0, gy01 = 0, gx10 = 0, gy10 = 0, gx11 = 0, gy11 = 0;
+
+                    for (int i = 0, k = o * sizeX; i < sizeX; i++, k++) {
+                        int X = cellX[k];
+
+                        if (X != lastX) {
+                            int X1 = cellX1[k];
+                            int h00 = h8(X, Y), h01 = h8(X1, Y), h10 = h8(X, Y1), h11 = h8(X1, Y1);
+                            gx00 = gradX(h00); gy00 = gradY(h00);
+                            gx01 = gradX(h01); gy01 = gradY(h01);
+                            gx10 = gradX(h10); gy10 = gradY(h10);
+                            gx11 = gradX(h11); gy11 = gradY(h11);
+                            lastX = X;
+                        }
+
+                        double x = fracX[k], u = fadeX[k];
+
+                        double w00 = gx00 * x + gy00 * yf;
+                        double w01 = gx01 * x + gy01 * yf;
+                        double w10 = gx10 * x + gy10 * yf;
+                        double w11 = gx11 * x + gy11 * yf;
+
+                        double w0 = lerp(u, w00, w01);
+                        double w1 = lerp(u, w10, w11);
+
+                        result[i] += lerp(v, w0, w1) * weight;
+                    }
+                }
+
+                y *= _lacunarity;
+            }
+
+            for (int i = 0; i < sizeX; i++)
+                row[i] = (float) result[i];
+
+            if (array != null) {
+                System.arraycopy(row, 0, array, j * sizeX, sizeX);
+            } else {
+                buffer.put(row);
+            }
+        }
+    }
+
+    /**
+     * Fills a region with the default fBm2d noise computed in single precision. The values are
+     * identical to calling fBm2f(float, float) for every sample at (x0 + i * step, y0 + j * step),
+     * otherwise the same as fBm2dRegion(double, double, double, int, int, float[]).
+     */
+    public void fBm2fRegion(float x0, float y0, float step, int sizeX, int sizeY, float[] dest) {
+        if (dest.length < sizeX * sizeY)
+            throw new IllegalArgumentException("Destination holds " + dest.length + " values, region needs " + sizeX * sizeY);
+
+        fBm2fRegion(x0, y0, step, sizeX, sizeY, dest, null);
+    }
+
+    /**
+     * Fills a region with the default fBm2d noise computed in single precision, starting at the
+     * current position of the buffer. The position of the buffer is left unchanged.
+     *
+     * @see #fBm2fRegion(float, float, float, int, int, float[])
+     */
+    public void fBm2fRegion(float x0, float y0, float step, int sizeX, int sizeY, FloatBuffer dest) {
+        if (dest.remaining() < sizeX * sizeY)
+            throw new IllegalArgumentException("Destination holds " + dest.remaining() + " values, region needs " + sizeX * sizeY);
+
+        fBm2fRegion(x0, y0, step, sizeX, sizeY, null, dest.duplicate());
+    }
+
+    private void fBm2fRegion(float x0, float y0, float step, int sizeX, int sizeY, float[] array, FloatBuffer buffer) {
+        int[] cellX = new int[_octaves * sizeX];
+        int[] cellX1 = new int[_octaves * sizeX];
+        float[] fracX = new float[_octaves * sizeX];
+        float[] fadeX = new float[_octaves * sizeX];
+
+        for (int i = 0; i < sizeX; i++) {
+            float base = x0 + i * step, x = base;
+
+            for (int o = 0; o < _octaves; o++) {
+                if (_frequenciesFloat != null)
+                    x = base * _frequenciesFloat[2 * o];
+
+                int k = o * sizeX + i, floor = (int) fastFloor(x);
+                cellX[k] = PerlinNoise3D.cell(floor, latticePeriod(o, 0));
+                cellX1[k] = PerlinNoise3D.cell(floor + 1, latticePeriod(o, 0));
+                fracX[k] = x - fastFloor(x);
+                fadeX[k] = fade(fracX[k]);
+
+                x *= _lacunarityFloat;
+            }
+        }
+
+        float[] row = new float[sizeX];
+        NoiseKernels vector = NoiseKernels.vector(sizeX);
+
+        for (int j = 0; j < sizeY; j++) {
+            float baseY = y0 + j * step, y = baseY;
+            Arrays.fill(row, 0);
+
+            for (int o = 0; o < _octaves; o++) {
+                if (_frequenciesFloat != null)
+                    y = baseY * _frequenciesFloat[2 * o + 1];
+
+                int floorY = (int) fastFloor(y);
+                int Y = PerlinNoise3D.cell(floorY, latticePeriod(o, 1)), Y1 = PerlinNoise3D.cell(floorY + 1, latticePeriod(o, 1));
+                float yf = y - fastFloor(y);
+                float v = fade(yf);
+                float weight = _spectralWeightsFloat[o];
+
+                if (vector != null) {
+                    vector.octave2f(_noisePermutations, cellX, cellX1, fracX, fadeX, o * sizeX, sizeX, Y, Y1, yf, v, weight, row);
+                } else {
+                    int lastX = -1;
+                    float gx00 = 0, gy00 = 0, gx01 = 0, gy01 = 0, gx10 = 0, gy10 = 0, gx11 = 0, gy11 = 0;
+
+                    for (int i = 0, k = o * sizeX; i < sizeX; i++, k++) {
+                        int X = cellX[k];
+
+                        if (X != lastX) {
+                            int X1 = cellX1[k];
+                            int h00 = h8(X, Y), h01 = h8(X1, Y), h10 = h8(X, Y1), h11 = h8(X1, Y1);
+                            gx00 = gradXf(h00); gy00 = gradYf(h00);
+                            gx01 = gradXf(h01); gy01 = gradYf(h01);
+                            gx10 = gradXf(h10); gy10 = gradYf(h10);
+                            gx11 = gradXf(h11); gy11 = gradYf(h11);
+                            lastX = X;
+                        }
+
+                        float x = fracX[k], u = fadeX[k];
+
+                        float w00 = gx00 * x + gy00 * yf;
+                        float w01 = gx01 * x + gy01 * yf;
+                        float w10 = gx10 * x + gy10 * yf;
+                        float w11 = gx11 * x + gy11 * yf;
+
+                        float w0 = lerp(u, w00, w01);
+                        float w1 = lerp(u, w10, w11);
+
+                        row[i] += lerp(v, w0, w1) * weight;
+                    }
+                }
+
+                y *= _lacunarityFloat;
+            }
+
+            if (array != null) {
+                System.arraycopy(row, 0, array, j * sizeX, sizeX);
+            } else {
+                buffer.put(row);
+            }
+        }
     }
 
-    private double[] hash(int u, int v) {
-        final int M = 0x3F;
-        int h = h8(u, v);
-        double hx = h & M; // use bits 0..5 for hx()
-        double hy = (h >> 2) & M; // use bits 2..7 for hy()
-        return new double[] {hx/M, hy/M};
+    // Mask of the hash bits that give one gradient component
+    private static final int GRAD_MASK = 0x3F;
+
+    // gradX of the hashes 0..GRAD_MASK, also gradY of the hashes shifted left by 2
+    private static final double[] GRAD_X = new double[GRAD_MASK + 1];
+
+    static {
+        for (int h = 0; h <= GRAD_MASK; h++)
+            GRAD_X[h] = gradX(h);
     }
 
-    public void setOctaves(int octaves) {
-        _octaves = octaves;
-        _recomputeSpectralWeights2d = true;
+    /**
+     * The gradient is derived from the permutation hash of the lattice point: bits 0..5 give
+     * the x component and bits 2..7 the y component, each mapped to [-1, 1]. The components are
+     * returned separately so that noise2d does not need to allocate per sample.
+     */
+    static double gradX(int hash) {
+        double hx = hash & GRAD_MASK;
+        return 2 * (hx / GRAD_MASK) - 1;
     }
 
-    public int getOctaves() {
-        return _octaves;
+    static double gradY(int hash) {
+        double hy = (hash >> 2) & GRAD_MASK;
+        return 2 * (hy / GRAD_MASK) - 1;
     }
 
-    public void setLACUNARITY(double L) {
-        LACUNARITY = L;
-        _recomputeSpectralWeights2d = true;
+    static float gradXf(int hash) {
+        float hx = hash & GRAD_MASK;
+        return 2 * (hx / GRAD_MASK) - 1;
     }
 
-    public double getLACUNARITY() {
-        return LACUNARITY;
+    static float gradYf(int hash) {
+        float hy = (hash >> 2) & GRAD_MASK;
+        return 2 * (hy / GRAD_MASK) - 1;
     }
 
-    public void setPersistence(double h) {
-        H = h;
-        _recomputeSpectralWeights2d = true;
+    private int latticePeriod(int octave, int axis) {
+        return _latticePeriods == null ? 0 : _latticePeriods[2 * octave + axis];
     }
 
-    public double getPersistence() {
-        return H;
+    private int h8(int u, int v) {
+        u = u & 0xFF;
+        v = v & 0xFF;
+        return _noisePermutations[_noisePermutations[u] + v];
     }
-}
 
+    public double getPeriodX() {
+        return _periodX;
+    }
 
-/**  public void Erode(float smoothness)
- {
- for (int i = 1; i < Size - 1; i++)
- {
- for (int j = 1; j < Size - 1; j++)
- {
- float d_max = 0.0f;
- int[] match = { 0, 0 };
-
- for (int u = -1; u <= 1; u++)
- {
- for (int v = -1; v <= 1; v++)
- {
- if(Math.Abs(u) + Math.Abs(v) > 0)
- {
- float d_i = Heights[i, j] - Heights[i + u, j + v];
- if (d_i > d_max)
- {
- d_max = d_i;
- match[0] = u; match[1] = v;
- }
- }
- }
- }
-
- if(0 < d_max && d_max <= (smoothness / (float)Size))
- {
- float d_h = 0.5f * d_max;
- Heights[i, j] -= d_h;
- Heights[i + match[0], j + match[1]] += d_h;
- }
- }
- }
- } **/
\ No newline at end of file
+    public double getPeriodY() {
+        return _periodY;
+    }
+}
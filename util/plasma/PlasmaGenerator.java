@@ -0,0 +1,345 @@
+/* PlasmaGenerator.java
+ * Headless random midpoint displacement, moved out of Plasma.java.
+ * Originally written by Justin Seyster and released into public domain,
+ * extended by Florian Rohm*/
+
+import java.util.Arrays;
+
+/**
+ * Generates "plasma fractal" tiles using random midpoint displacement and mixes them with
+ * Perlin noise. It writes into flat fields of explicit size and does not depend on AWT.
+ * The displacement of every point only depends on its coordinates and the seed, so tiles can
+ * be computed independently of each other and in any order. The plane is unbounded: a tile
+ * can be computed at any position, negative ones included, and joins its neighbours seamlessly.
+ * <p/>
+ * Optionally the plane is periodic: the positions are wrapped to the period before they are
+ * hashed, so the plasma repeats and a field of one period tiles seamlessly.
+ */
+public class PlasmaGenerator {
+
+    private final int _seed;
+    private final int _tileWidth;
+    private final int _tileHeight;
+    private final float _strength;
+    private final boolean _iterative;
+    private final int _periodX;
+    private final int _periodY;
+
+    /**
+     * @param seed       Seed for the pseudorandom value -> Same seed, same outcome
+     * @param tileWidth  Width of one plasma tile. Set this to tileHeight*(2^(n)), n >= 0 and integer
+     * @param tileHeight Height of one plasma tile
+     * @param strength   Strength of the displacement (0 meaning a smooth gradient, 1 default value)
+     */
+    public PlasmaGenerator(int seed, int tileWidth, int tileHeight, float strength) {
+        this(seed, tileWidth, tileHeight, strength, 0, 0);
+    }
+
+    /**
+     * @param seed       Seed for the pseudorandom value -> Same seed, same outcome
+     * @param tileWidth  Width of one plasma tile. Set this to tileHeight*(2^(n)), n >= 0 and integer
+     * @param tileHeight Height of one plasma tile
+     * @param strength   Strength of the displacement (0 meaning a smooth gradient, 1 default value)
+     * @param periodX    Horizontal period in pixels, a multiple of tileWidth, or 0 for none
+     * @param periodY    Vertical period in pixels, a multiple of tileHeight, or 0 for none
+     */
+    public PlasmaGenerator(int seed, int tileWidth, int tileHeight, float strength, int periodX, int periodY) {
+        if (periodX < 0 || periodX % tileWidth != 0)
+            throw new IllegalArgumentException("The horizontal period must be a multiple of the tile width " + tileWidth + ", got " + periodX);
+        if (periodY < 0 || periodY % tileHeight != 0)
+            throw new IllegalArgumentException("The vertical period must be a multiple of the tile height " + tileHeight + ", got " + periodY);
+
+        _seed = seed;
+        _tileWidth = tileWidth;
+        _tileHeight = tileHeight;
+        _strength = strength;
+        _iterative = isPowerOfTwo(tileWidth) && isPowerOfTwo(tileHeight) && tileWidth >= tileHeight;
+        _periodX = periodX;
+        _periodY = periodY;
+    }
+
+    public int getSeed() {
+        return _seed;
+    }
+
+    public float getStrength() {
+        return _strength;
+    }
+
+    public int getTileWidth() {
+        return _tileWidth;
+    }
+
+    public int getTileHeight() {
+        return _tileHeight;
+    }
+
+    public int getPeriodX() {
+        return _periodX;
+    }
+
+    public int getPeriodY() {
+        return _periodY;
+    }
+
+    //Calculates all tiles needed to cover dest.
+    public void calcPlasma(Field dest) {
+        for (int j = 0; j < dest.getWidth(); j = j + _tileWidth) {
+            for (int i = 0; i < dest.getHeight(); i = i + _tileHeight) {
+                calcPlasmaPiece(dest, j, i);
+            }
+        }
+    }
+
+    //"Main" function to calculate one tileWidth times tileHeight piece of noise. These get tiled to fill dest.
+    //Pixels outside of dest are dropped.
+    public void calcPlasmaPiece(Field dest, int initialPositionX, int initialPositionY) {
+        calcPlasmaPiece(dest, 0, 0, initialPositionX, initialPositionY);
+    }
+
+    /**
+     * Calculates the tile (tileX, tileY) of the unbounded plane, whose top left pixel lies at
+     * (tileX * tileWidth, tileY * tileHeight), into the top left corner of dest. Pixels outside of
+     * dest are dropped. The pixel positions must fit into an int; with tile sizes that are not
+     * powers of two the positions are also handled as floats, which are only exact up to 2^24.
+     */
+    public void calcPlasmaTile(Field dest, int tileX, int tileY) {
+        int x = tileX * _tileWidth, y = tileY * _tileHeight;
+        calcPlasmaPiece(dest, x, y, x, y);
+    }
+
+    //Calculates the piece at (initialPositionX, initialPositionY) of the plane, the pixel (x, y) is
+    //written to (x - originX, y - originY) of dest.
+    private void calcPlasmaPiece(Field dest, int originX, int originY, int initialPositionX, int initialPositionY) {
+        float c1, c2, c3, c4;
+
+        //Assign the four corners of the initial grid random color values
+        //These will end up being the colors of the four corners of the tile.
+
+        c1 = myRandom(initialPositionX, initialPositionY);
+        c2 = myRandom(initialPositionX + _tileWidth, initialPositionY);
+        c3 = myRandom(initialPositionX + _tileWidth, initialPositionY + _tileHeight);
+        c4 = myRandom(initialPositionX, initialPositionY + _tileHeight);
+
+        //DivideGrid writes every pixel of the tile, so a SplitGrid pass before it would be overwritten
+        if (_iterative) {
+            calcPlasmaPieceIterative(dest, originX, originY, initialPositionX, initialPositionY, c1, c2, c3, c4);
+        } else {
+            DivideGrid(dest, originX, originY, initialPositionX, initialPositionY, _tileWidth, _tileHeight, c1, c2, c3, c4);
+        }
+    }
+
+    //Level-by-level version of DivideGrid(dest, x, y, tileWidth, tileHeight, c1, c2, c3, c4) for tiles of
+    //2^m x 2^k pixels, m >= k. Every lattice point is displaced exactly once, using the same formula,
+    //hashed coordinates and evaluation order as the recursion, so the pixels are identical.
+    //
+    //The first k levels refine the whole tile down to cells of (tileWidth/tileHeight) x 1 pixels.
+    //The remaining levels are done one pixel row ("band") at a time, walking the tile in row order.
+    //The refined bottom row of a band is the top row of the next band, so it is carried over.
+    //In the recursion the last cell written to a pixel is the bottom-most one, whose corners
+    //lie on the last two lattice rows of the band.
+    private void calcPlasmaPieceIterative(Field dest, int originX, int originY, int initialPositionX, int initialPositionY,
+                                          float c1, float c2, float c3, float c4) {
+        int columnWidth = _tileWidth / _tileHeight;
+        int subRows = columnWidth;
+
+        int coarseStride = _tileHeight + 1;
+        float[] coarse = new float[coarseStride * coarseStride];
+        coarse[0] = c1;
+        coarse[_tileHeight] = c2;
+        coarse[_tileHeight * coarseStride + _tileHeight] = c3;
+        coarse[_tileHeight * coarseStride] = c4;
+
+        int[] coarseY = new int[coarseStride];
+        for (int r = 0; r < coarseStride; r++)
+            coarseY[r] = wrapY(initialPositionY + r);
+
+        //The wrapped x coordinate of every pixel column, including the right edge of the tile
+        int[] columnX = new int[_tileWidth + 1];
+        for (int c = 0; c <= _tileWidth; c++)
+            columnX[c] = wrapX(initialPositionX + c);
+
+        refine(coarse, coarseStride, coarseStride, _tileHeight, columnX, columnWidth, coarseY, 1, false);
+
+        int bandStride = _tileWidth + 1;
+        float[] band = new float[(subRows + 1) * bandStride];
+        int[] bandY = new int[subRows + 1];
+        float[] row = new float[_tileWidth];
+
+        int destX = initialPositionX - originX, destY = initialPositionY - originY;
+        int rows = Math.min(_tileHeight, dest.getHeight() - destY);
+        int columns = Math.min(_tileWidth, dest.getWidth() - destX);
+
+        for (int py = 0; py < rows; py++) {
+            int bottom = subRows * bandStride;
+
+            if (py == 0) {
+                for (int c = 0; c < coarseStride; c++)
+                    band[c * columnWidth] = coarse[c];
+            } else {
+                System.arraycopy(band, bottom, band, 0, bandStride);
+            }
+
+            for (int c = 0; c < coarseStride; c++)
+                band[bottom + c * columnWidth] = coarse[(py + 1) * coarseStride + c];
+
+            //The rows of a band lie at y + r / subRows, which the hash truncates to y except for the last one
+            Arrays.fill(bandY, wrapY(initialPositionY + py));
+            bandY[subRows] = wrapY(initialPositionY + py + 1);
+
+            refine(band, bandStride, subRows + 1, subRows, columnX, 1, bandY, 1f / subRows, py > 0);
+
+            //The four corners of the grid piece will be averaged and drawn as a single pixel.
+            int top = (subRows - 1) * bandStride;
+            for (int px = 0; px < columns; px++)
+                row[px] = (band[top + px] + band[top + px + 1] + band[bottom + px + 1] + band[bottom + px]) / 4;
+
+            dest.setRow(destX, destY + py, row, 0, columns);
+        }
+    }
+
+    //Refines the lattice p (rows x stride points) from cells of step x step points down to single points.
+    //The point (c, r) is hashed at (columnX[c * xUnit], rowY[r]), columnX holds the wrapped x of each
+    //pixel column. rowHeight is the height of a lattice row
+    //in pixels. Only points on the old lattice are read on each level, so the order within a level
+    //does not matter. If topRowDone is set, the first row already holds its final values.
+    private void refine(float[] p, int stride, int rows, int step, int[] columnX, int xUnit, int[] rowY, float rowHeight, boolean topRowDone) {
+        for (int s = step; s > 1; s >>= 1) {
+            int half = s >> 1;
+            float newWidth = half * xUnit;
+            float newHeight = half * rowHeight;
+            float max = ((newWidth + newHeight) / (float) (_tileWidth + _tileHeight)) * _strength;
+
+            //Edges along the rows, Edge1 and Edge3 of the cells
+            for (int r = topRowDone ? s : 0; r < rows; r += s) {
+                int y = rowY[r];
+                int i = r * stride;
+
+                for (int c = half; c < stride; c += s)
+                    p[i + c] = clip((p[i + c - half] + p[i + c + half]) / 2
+                            + (random(columnX[c * xUnit], y) - 0.5F) * max / 1.42F);
+            }
+
+            for (int r = half; r < rows; r += s) {
+                int y = rowY[r];
+                //The recursion displaces the midpoint at (x + newWidth, y + newWidth)
+                int middleY = wrapY(rowY[r - half] + half * xUnit);
+                int above = (r - half) * stride, i = r * stride, below = (r + half) * stride;
+
+                //Edges along the columns, Edge2 and Edge4 of the cells
+                for (int c = 0; c < stride; c += s)
+                    p[i + c] = clip((p[above + c] + p[below + c]) / 2
+                            + (random(columnX[c * xUnit], y) - 0.5F) * max / 1.42F);
+
+                //Randomly displace the midpoint!
+                for (int c = half; c < stride; c += s)
+                    p[i + c] = clip((p[above + c - half] + p[above + c + half] + p[below + c + half] + p[below + c - half]) / 4
+                            + (random(columnX[c * xUnit], middleY) - 0.5F) * max);
+            }
+        }
+    }
+
+    private static boolean isPowerOfTwo(int i) {
+        return i > 0 && (i & (i - 1)) == 0;
+    }
+
+    void DivideGrid(Field dest, float x, float y, float width, float height, float c1, float c2, float c3, float c4) {
+        DivideGrid(dest, 0, 0, x, y, width, height, c1, c2, c3, c4);
+    }
+
+    //This is the recursive function that implements the random midpoint
+    //displacement algorithm.  It will call itself until the grid pieces
+    //become smaller than one pixel. The pixel (x, y) is drawn at (x - originX, y - originY) of dest.
+    private void DivideGrid(Field dest, int originX, int originY, float x, float y, float width, float height,
+                            float c1, float c2, float c3, float c4) {
+        float Edge1, Edge2, Edge3, Edge4, Middle;
+        float newWidth = width / 2;
+        float newHeight = height / 2;
+
+        if (width > 1 || height > 1) {
+            Middle = (c1 + c2 + c3 + c4) / 4 + Displace(newWidth + newHeight, x + newWidth, y + newWidth);    //Randomly displace the midpoint!
+            Edge1 = (c1 + c2) / 2 + Displace(newWidth + newHeight, x + newWidth, y) / 1.42F;    //Calculate the edges by averaging the two corners of each edge.
+            Edge2 = (c2 + c3) / 2 + Displace(newWidth + newHeight, x + width, y + newHeight) / 1.42F;
+            Edge3 = (c3 + c4) / 2 + Displace(newWidth + newHeight, x + newWidth, y + height) / 1.42F;
+            Edge4 = (c4 + c1) / 2 + Displace(newWidth + newHeight, x, y + newHeight) / 1.42F;
+
+            //Make sure that the points don't accidentally "randomly displaced" past the boundaries!
+            Middle = clip(Middle);
+            Edge1 = clip(Edge1);
+            Edge2 = clip(Edge2);
+            Edge3 = clip(Edge3);
+            Edge4 = clip(Edge4);
+
+            //Do the operation over again for each of the four new grids.
+            DivideGrid(dest, originX, originY, x, y, newWidth, newHeight, c1, Edge1, Middle, Edge4);
+            DivideGrid(dest, originX, originY, x + newWidth, y, newWidth, newHeight, Edge1, c2, Edge2, Middle);
+            DivideGrid(dest, originX, originY, x + newWidth, y + newHeight, newWidth, newHeight, Middle, Edge2, c3, Edge3);
+            DivideGrid(dest, originX, originY, x, y + newHeight, newWidth, newHeight, Edge4, Middle, Edge3, c4);
+        } else    //This is the "base case," where each grid piece is less than the size of a pixel.
+        {
+            //The four corners of the grid piece will be averaged and drawn as a single pixel.
+            float c = (c1 + c2 + c3 + c4) / 4;
+            int px = floor(x) - originX, py = floor(y) - originY;
+
+            if (px >= 0 && px < dest.getWidth() && py >= 0 && py < dest.getHeight()) {
+                dest.set(px, py, c);
+            }
+        }
+    }
+
+    //Combines a Perlin and a plasma value, both in [0;1], into the mixed outcome.
+    //The Perlin value gets a nonlinear fade and is stretched to [-1;1] before it modulates the plasma.
+    public static float mix(float n, float p) {
+        n = n * n * n * (n * (n * 6 - 15) + 10);
+        n = (n - 0.5f) * 2;  //stretch to -1, 1
+        float c;
+        c = ((p * n * (p + 1.f) + p) / 2.5f);
+        c = clip((c + 1) / 2); // refit into 0,1
+        c = (c + p) / 2f;
+        return c;
+    }
+
+//Helper Functions ------------------
+
+    //Randomly displaces color value for midpoint depending on size
+    //of grid piece.
+    float Displace(float num, float x, float y) {
+        float max = (num / (float) (_tileWidth + _tileHeight)) * _strength;
+        return (myRandom(x, y) - 0.5F) * max;
+    }
+
+    //returns value between 0 and 1 based on integer hashing
+    private float myRandom(float x, float y) {
+        return random(wrapX(floor(x)), wrapY(floor(y)));
+    }
+
+    private int wrapX(int x) {
+        return _periodX == 0 ? x : Math.floorMod(x, _periodX);
+    }
+
+    private int wrapY(int y) {
+        return _periodY == 0 ? y : Math.floorMod(y, _periodY);
+    }
+
+    //Rounds towards negative infinity, so the pixels left of and above the origin hash and draw
+    //like all others. For positive positions this is the same as a cast.
+    private static int floor(float f) {
+        int i = (int) f;
+        return f < i ? i - 1 : i;
+    }
+
+    //Value in [0;1) of the wrapped pixel position
+    private float random(int x, int y) {
+        return CoordinateHash.unit(x, y, 0, _seed);
+    }
+
+    //clips the value t to fit into [0;1]
+    static float clip(float t) {
+        if (t < 0) {
+            return 0;
+        } else if (t > 1.0f) {
+            return 1.0f;
+        }
+        return t;
+    }
+}
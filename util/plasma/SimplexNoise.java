@@ -0,0 +1,124 @@
+/**
+ * Simplex noise after Ken Perlin, in the formulation of Stefan Gustavson's "Simplex noise
+ * demystified". The lattice is skewed into triangles in 2d and tetrahedra in 3d, so a sample
+ * only adds up the contributions of 3 or 4 corners instead of the 4 or 8 of Perlin noise, and
+ * the noise shows no axis aligned artifacts. The corners use the 12 gradients of the Perlin
+ * reference implementation, picked with the shared permutation table.
+ * <p/>
+ * The kernel radius is 0.5, so the noise is continuous across simplex borders. The scale factors
+ * map each octave to about [-1;1].
+ */
+public class SimplexNoise extends FractalNoise {
+
+    public static final double DEFAULT_LACUNARITY = 2.1379201;
+    public static final double DEFAULT_PERSISTENCE = 0.836281;
+    public static final int DEFAULT_OCTAVES = 9;
+
+    // Skew and unskew factors of the lattice
+    private static final double F2 = 0.5 * (Math.sqrt(3) - 1);
+    private static final double G2 = (3 - Math.sqrt(3)) / 6;
+    private static final double F3 = 1.0 / 3;
+    private static final double G3 = 1.0 / 6;
+
+    private static final double SCALE2 = 70.1;
+    private static final double SCALE3 = 76.9;
+
+    // The gradients to the midpoints of the edges of a cube, 2d uses their x and y components
+    private static final int[][] GRAD3 = {{1, 1, 0}, {-1, 1, 0}, {1, -1, 0}, {-1, -1, 0},
+            {1, 0, 1}, {-1, 0, 1}, {1, 0, -1}, {-1, 0, -1},
+            {0, 1, 1}, {0, -1, 1}, {0, 1, -1}, {0, -1, -1}};
+
+    public SimplexNoise(int seed) {
+        this(seed, DEFAULT_OCTAVES, DEFAULT_LACUNARITY, DEFAULT_PERSISTENCE);
+    }
+
+    /**
+     * @param seed        The seed value
+     * @param octaves     The amount of octaves added by the sample methods
+     * @param lacunarity  The frequency multiplier between two octaves
+     * @param persistence The exponent H of the spectral weights lacunarity^(-H * octave)
+     */
+    public SimplexNoise(int seed, int octaves, double lacunarity, double persistence) {
+        super(seed, octaves, lacunarity, persistence);
+    }
+
+    public double noise2d(double x, double y) {
+        // The triangle the sample lies in, from the skewed cell and the order of x0 and y0
+        double s = (x + y) * F2;
+        int i = (int) fastFloor(x + s), j = (int) fastFloor(y + s);
+        double t = (i + j) * G2;
+        double x0 = x - (i - t), y0 = y - (j - t);
+
+        int i1 = x0 > y0 ? 1 : 0, j1 = 1 - i1;
+
+        double x1 = x0 - i1 + G2, y1 = y0 - j1 + G2;
+        double x2 = x0 - 1 + 2 * G2, y2 = y0 - 1 + 2 * G2;
+
+        int[] p = _noisePermutations;
+        int ii = i & 255, jj = j & 255;
+
+        return SCALE2 * (corner(p[ii + p[jj]], x0, y0)
+                + corner(p[ii + i1 + p[jj + j1]], x1, y1)
+                + corner(p[ii + 1 + p[jj + 1]], x2, y2));
+    }
+
+    public double noise3d(double x, double y, double z) {
+        double s = (x + y + z) * F3;
+        int i = (int) fastFloor(x + s), j = (int) fastFloor(y + s), k = (int) fastFloor(z + s);
+        double t = (i + j + k) * G3;
+        double x0 = x - (i - t), y0 = y - (j - t), z0 = z - (k - t);
+
+        // The tetrahedron the sample lies in, from the order of x0, y0 and z0
+        int i1, j1, k1, i2, j2, k2;
+        if (x0 >= y0) {
+            if (y0 >= z0) {
+                i1 = 1; j1 = 0; k1 = 0; i2 = 1; j2 = 1; k2 = 0;
+            } else if (x0 >= z0) {
+                i1 = 1; j1 = 0; k1 = 0; i2 = 1; j2 = 0; k2 = 1;
+            } else {
+                i1 = 0; j1 = 0; k1 = 1; i2 = 1; j2 = 0; k2 = 1;
+            }
+        } else {
+            if (y0 < z0) {
+                i1 = 0; j1 = 0; k1 = 1; i2 = 0; j2 = 1; k2 = 1;
+            } else if (x0 < z0) {
+                i1 = 0; j1 = 1; k1 = 0; i2 = 0; j2 = 1; k2 = 1;
+            } else {
+                i1 = 0; j1 = 1; k1 = 0; i2 = 1; j2 = 1; k2 = 0;
+            }
+        }
+
+        double x1 = x0 - i1 + G3, y1 = y0 - j1 + G3, z1 = z0 - k1 + G3;
+        double x2 = x0 - i2 + 2 * G3, y2 = y0 - j2 + 2 * G3, z2 = z0 - k2 + 2 * G3;
+        double x3 = x0 - 1 + 3 * G3, y3 = y0 - 1 + 3 * G3, z3 = z0 - 1 + 3 * G3;
+
+        int[] p = _noisePermutations;
+        int ii = i & 255, jj = j & 255, kk = k & 255;
+
+        return SCALE3 * (corner(p[ii + p[jj + p[kk]]], x0, y0, z0)
+                + corner(p[ii + i1 + p[jj + j1 + p[kk + k1]]], x1, y1, z1)
+                + corner(p[ii + i2 + p[jj + j2 + p[kk + k2]]], x2, y2, z2)
+                + corner(p[ii + 1 + p[jj + 1 + p[kk + 1]]], x3, y3, z3));
+    }
+
+    //Contribution of a corner at the offset (x, y) from the sample, 0 beyond the kernel radius
+    private static double corner(int hash, double x, double y) {
+        double t = 0.5 - x * x - y * y;
+        if (t < 0)
+            return 0;
+
+        int[] g = GRAD3[hash % 12];
+        t *= t;
+        return t * t * (g[0] * x + g[1] * y);
+    }
+
+    private static double corner(int hash, double x, double y, double z) {
+        double t = 0.5 - x * x - y * y - z * z;
+        if (t < 0)
+            return 0;
+
+        int[] g = GRAD3[hash % 12];
+        t *= t;
+        return t * t * (g[0] * x + g[1] * y + g[2] * z);
+    }
+}
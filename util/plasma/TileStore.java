@@ -0,0 +1,387 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32C;
+
+/**
+ * Keeps the tiles of an unbounded world generated by GenerationEngine.generateTile in a region
+ * file, so they survive a restart. A tile that was stored before is served from a memory
+ * mapping of the file: reading it pages the samples in instead of computing them again.
+ * <p/>
+ * The file starts with a header of HEADER_BYTES holding the settings of the generators, a
+ * store only opens files written with the same settings. The tiles follow as records of
+ * equal size, each a small record header with the tile position and checksums, then the
+ * plasma, Perlin and mixed samples as little endian floats. The tile index is rebuilt from
+ * the record headers when the file is opened; if a tile was stored more than once the last
+ * record wins.
+ * <p/>
+ * Writes are crash-safe. A new file is written to a temporary file first and atomically
+ * moved into place, and the directory is forced after the move, so the file either exists with
+ * a complete header or not at all. Tiles are only ever appended and forced to the disk before
+ * they are added to the index. A crash while appending leaves at most the last record
+ * incomplete or with a wrong checksum, which is cut off when the file is opened the next time.
+ * Damage anywhere else can not come from an interrupted append, so it is never cut off: a
+ * record with a damaged header is skipped, and every record is checked against its checksum on
+ * its first read, a damaged tile is generated and appended again.
+ * <p/>
+ * The store is safe to use from several threads. The returned tiles are read-only views of
+ * the file, they stay valid after the store is closed.
+ */
+public class TileStore implements Closeable {
+
+    static final int HEADER_BYTES = 128;
+    static final int RECORD_HEADER_BYTES = 16;
+
+    private static final int MAGIC = 0x53544C50;    // "PLTS" in little endian
+    // 2: plasma and permutations hashed with CoordinateHash, so tiles of version 1 differ
+    private static final int VERSION = 2;
+
+    private final File _file;
+    private final FileChannel _channel;
+    private final GenerationEngine _engine;
+    private final int _tileWidth;
+    private final int _tileHeight;
+    private final long _recordBytes;
+
+    // Record number of every stored tile by tileKey, negative once the record passed its checksum
+    private final HashMap<Long, Integer> _index = new HashMap<Long, Integer>();
+    private int _records;
+
+    /**
+     * Opens the store in file, creating it if it does not exist.
+     *
+     * @param file            The region file
+     * @param plasma          Generator for the plasma tiles, also defines the tile size
+     * @param perlin          Noise used for the Perlin tiles
+     * @param singlePrecision True to compute the Perlin tiles in single precision, see GenerationEngine
+     * @throws IOException              If the file can not be read or is no tile store
+     * @throws IllegalArgumentException If the file was written with other settings
+     */
+    public TileStore(File file, PlasmaGenerator plasma, PerlinNoise3D perlin, boolean singlePrecision) throws IOException {
+        _file = file;
+        _engine = new GenerationEngine(ForkJoinPool.commonPool(), plasma, perlin, singlePrecision);
+        _tileWidth = plasma.getTileWidth();
+        _tileHeight = plasma.getTileHeight();
+        _recordBytes = RECORD_HEADER_BYTES + 3L * 4 * _tileWidth * _tileHeight;
+
+        ByteBuffer header = header(plasma, perlin, singlePrecision);
+        if (!file.exists())
+            create(file, header);
+
+        _channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            checkHeader(header);
+            readIndex();
+        } catch (IOException e) {
+            _channel.close();
+            throw e;
+        } catch (RuntimeException e) {
+            _channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the stored tile (tileX, tileY), or null if it was not stored or its record is
+     * damaged.
+     */
+    public Tile get(int tileX, int tileY) throws IOException {
+        Integer record;
+        synchronized (this) {
+            record = _index.get(tileKey(tileX, tileY));
+        }
+        if (record == null)
+            return null;
+
+        ByteBuffer mapped = _channel.map(FileChannel.MapMode.READ_ONLY, offset(record < 0 ? ~record : record), _recordBytes)
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        if (record >= 0) {
+            if (!isValid(mapped, tileX, tileY)) {
+                synchronized (this) {
+                    _index.remove(tileKey(tileX, tileY), record);
+                }
+                return null;
+            }
+            synchronized (this) {
+                _index.replace(tileKey(tileX, tileY), record, ~record);
+            }
+        }
+
+        int samples = _tileWidth * _tileHeight;
+        mapped.position(RECORD_HEADER_BYTES);
+        FloatBuffer floats = mapped.asFloatBuffer();
+        return new Tile(tileX, tileY,
+                Field.wrap(_tileWidth, _tileHeight, floats.position(0).limit(samples)),
+                Field.wrap(_tileWidth, _tileHeight, floats.limit(2 * samples).position(samples)),
+                Field.wrap(_tileWidth, _tileHeight, floats.limit(3 * samples).position(2 * samples)));
+    }
+
+    /**
+     * Returns the tile (tileX, tileY), generating and storing it if it is not stored yet.
+     */
+    public Tile getOrGenerate(int tileX, int tileY) throws IOException {
+        Tile tile = get(tileX, tileY);
+        if (tile != null)
+            return tile;
+
+        // Two threads missing the same tile both generate and append it, the values are equal
+        Field plasma = Field.onHeap(_tileWidth, _tileHeight);
+        Field perlin = Field.onHeap(_tileWidth, _tileHeight);
+        Field mixed = Field.onHeap(_tileWidth, _tileHeight);
+        _engine.generateTile(tileX, tileY, plasma, perlin, mixed);
+        put(tileX, tileY, plasma, perlin, mixed);
+
+        return new Tile(tileX, tileY, plasma, perlin, mixed);
+    }
+
+    /**
+     * Fills the given fields with the world from pixel (0, 0) on, like GenerationEngine.generate,
+     * reading the tiles from the store and generating only the missing ones.
+     *
+     * @param plasma Destination of the plasma field
+     * @param perlin Destination of the Perlin field
+     * @param mixed  Destination of the mixed field, may be null if it is not needed
+     */
+    public void fill(Field plasma, Field perlin, Field mixed) throws IOException {
+        int width = plasma.getWidth(), height = plasma.getHeight();
+        float[] row = new float[_tileWidth];
+
+        for (int tileY = 0; tileY * _tileHeight < height; tileY++) {
+            for (int tileX = 0; tileX * _tileWidth < width; tileX++) {
+                Tile tile = getOrGenerate(tileX, tileY);
+                int x0 = tileX * _tileWidth, y0 = tileY * _tileHeight;
+                int w = Math.min(_tileWidth, width - x0), h = Math.min(_tileHeight, height - y0);
+
+                for (int y = 0; y < h; y++) {
+                    tile.plasma.getRow(0, y, row, 0, w);
+                    plasma.setRow(x0, y0 + y, row, 0, w);
+                    tile.perlin.getRow(0, y, row, 0, w);
+                    perlin.setRow(x0, y0 + y, row, 0, w);
+                    if (mixed != null) {
+                        tile.mixed.getRow(0, y, row, 0, w);
+                        mixed.setRow(x0, y0 + y, row, 0, w);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends the tile (tileX, tileY) to the file. The fields must be at least as large as a
+     * tile, only the top left tile of them is stored.
+     */
+    public void put(int tileX, int tileY, Field plasma, Field perlin, Field mixed) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate((int) _recordBytes).order(ByteOrder.LITTLE_ENDIAN);
+        FloatBuffer floats = record.position(RECORD_HEADER_BYTES).slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        float[] row = new float[_tileWidth];
+
+        for (Field field : new Field[]{plasma, perlin, mixed}) {
+            for (int y = 0; y < _tileHeight; y++) {
+                field.getRow(0, y, row, 0, _tileWidth);
+                floats.put(row);
+            }
+        }
+
+        CRC32C crc = new CRC32C();
+        crc.update(record.position(RECORD_HEADER_BYTES));
+        record.putInt(0, tileX).putInt(4, tileY).putInt(8, (int) crc.getValue());
+        record.putInt(12, headerCrc(record));
+        record.position(0);
+
+        synchronized (this) {
+            long position = offset(_records);
+            while (record.hasRemaining())
+                position += _channel.write(record, position);
+            _channel.force(false);
+
+            // Written and checked, it does not need to pass the checksum again
+            _index.put(tileKey(tileX, tileY), ~_records);
+            _records++;
+        }
+    }
+
+    public synchronized boolean contains(int tileX, int tileY) {
+        return _index.containsKey(tileKey(tileX, tileY));
+    }
+
+    /**
+     * Returns the number of distinct tiles in the store.
+     */
+    public synchronized int size() {
+        return _index.size();
+    }
+
+    public File getFile() {
+        return _file;
+    }
+
+    public void close() throws IOException {
+        _channel.close();
+    }
+
+    //Writes a file holding only the header, through a temporary file so it appears atomically
+    private static void create(File file, ByteBuffer header) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        File temp = File.createTempFile(file.getName(), ".tmp", directory);
+        try {
+            FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE);
+            try {
+                header.position(0);
+                while (header.hasRemaining())
+                    channel.write(header);
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory(directory);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    //Makes the rename durable. Not every platform can open a directory, e.g. Windows can not,
+    //there the move itself has to do.
+    private static void forceDirectory(File directory) {
+        try {
+            FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+            try {
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+        } catch (IOException e) {
+            // The directory can not be forced on this platform
+        }
+    }
+
+    //The header of a file for the given settings
+    private static ByteBuffer header(PlasmaGenerator plasma, PerlinNoise3D perlin, boolean singlePrecision) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION)
+                .putInt(plasma.getSeed()).putInt(plasma.getTileWidth()).putInt(plasma.getTileHeight())
+                .putFloat(plasma.getStrength()).putInt(plasma.getPeriodX()).putInt(plasma.getPeriodY())
+                .putInt(perlin.getSeed()).putInt(perlin.getOctaves())
+                .putDouble(perlin.getLACUNARITY()).putDouble(perlin.getPersistence())
+                .putDouble(perlin.getPeriodX()).putDouble(perlin.getPeriodY()).putDouble(perlin.getPeriodZ())
+                .putDouble(GenerationEngine.PERLIN_SCALE).putInt(singlePrecision ? 1 : 0);
+
+        CRC32C crc = new CRC32C();
+        crc.update(header.array(), 0, HEADER_BYTES - 4);
+        header.putInt(HEADER_BYTES - 4, (int) crc.getValue());
+        return header;
+    }
+
+    private void checkHeader(ByteBuffer expected) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining())
+            if (_channel.read(header, header.position()) < 0)
+                throw new IOException(_file + " is no tile store, it is shorter than a header");
+
+        CRC32C crc = new CRC32C();
+        crc.update(header.array(), 0, HEADER_BYTES - 4);
+        if (header.getInt(0) != MAGIC || header.getInt(HEADER_BYTES - 4) != (int) crc.getValue())
+            throw new IOException(_file + " is no tile store or its header is damaged");
+        if (header.getInt(4) != VERSION)
+            throw new IOException(_file + " has version " + header.getInt(4) + ", expected " + VERSION);
+        if (!header.position(0).equals(expected.position(0)))
+            throw new IllegalArgumentException(_file + " was written with other generator settings");
+    }
+
+    //Reads the record headers into the index, skips records with a damaged header and cuts off
+    //an interrupted last append
+    private void readIndex() throws IOException {
+        long size = _channel.size();
+        int records = (int) ((size - HEADER_BYTES) / _recordBytes);
+        ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+        // Only the last append can have been interrupted, earlier ones were forced before it.
+        // Bytes after the last complete record are such an append, otherwise it is the last
+        // complete record if it does not match its checksums.
+        boolean tornTail = offset(records) < size;
+
+        for (int i = 0; i < records; i++) {
+            recordHeader.clear();
+            while (recordHeader.hasRemaining())
+                if (_channel.read(recordHeader, offset(i) + recordHeader.position()) < 0)
+                    throw new IOException(_file + " ended while reading record " + i);
+
+            boolean valid = recordHeader.getInt(12) == headerCrc(recordHeader);
+            if (i == records - 1 && !tornTail) {
+                if (valid) {
+                    ByteBuffer mapped = _channel.map(FileChannel.MapMode.READ_ONLY, offset(i), _recordBytes).order(ByteOrder.LITTLE_ENDIAN);
+                    valid = isValid(mapped, recordHeader.getInt(0), recordHeader.getInt(4));
+                }
+                if (!valid) {
+                    records = i;
+                    break;
+                }
+            }
+
+            // A damaged header elsewhere is not a torn append, the records after it stay
+            if (valid)
+                _index.put(tileKey(recordHeader.getInt(0), recordHeader.getInt(4)), i);
+        }
+
+        _records = records;
+        if (offset(records) < size) {
+            _channel.truncate(offset(records));
+            _channel.force(true);
+        }
+    }
+
+    //True if the record holds the tile (tileX, tileY) and its samples match the checksum
+    private static boolean isValid(ByteBuffer record, int tileX, int tileY) {
+        if (record.getInt(0) != tileX || record.getInt(4) != tileY || record.getInt(12) != headerCrc(record))
+            return false;
+
+        CRC32C crc = new CRC32C();
+        crc.update(record.duplicate().position(RECORD_HEADER_BYTES));
+        return record.getInt(8) == (int) crc.getValue();
+    }
+
+    //Checksum of the first 12 bytes of a record header
+    private static int headerCrc(ByteBuffer record) {
+        CRC32C crc = new CRC32C();
+        crc.update(record.duplicate().position(0).limit(12));
+        return (int) crc.getValue();
+    }
+
+    private long offset(int record) {
+        return HEADER_BYTES + record * _recordBytes;
+    }
+
+    private static long tileKey(int tileX, int tileY) {
+        return ((long) tileX << 32) | (tileY & 0xFFFFFFFFL);
+    }
+
+    /**
+     * The plasma, Perlin and mixed field of one tile.
+     */
+    public static final class Tile {
+
+        public final int tileX;
+        public final int tileY;
+        public final Field plasma;
+        public final Field perlin;
+        public final Field mixed;
+
+        Tile(int tileX, int tileY, Field plasma, Field perlin, Field mixed) {
+            this.tileX = tileX;
+            this.tileY = tileY;
+            this.plasma = plasma;
+            this.perlin = perlin;
+            this.mixed = mixed;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * Value noise: every lattice point gets a pseudorandom value in [-1;1] from the permutation
+ * table, which is interpolated with the quintic fade curve of the Perlin noise. It is the
+ * cheapest of the noise sources, a lookup per corner instead of a gradient, but shows the
+ * lattice more clearly and has more energy at low frequencies.
+ */
+public class ValueNoise extends FractalNoise {
+
+    public static final double DEFAULT_LACUNARITY = 2.1379201;
+    public static final double DEFAULT_PERSISTENCE = 0.836281;
+    public static final int DEFAULT_OCTAVES = 9;
+
+    public ValueNoise(int seed) {
+        this(seed, DEFAULT_OCTAVES, DEFAULT_LACUNARITY, DEFAULT_PERSISTENCE);
+    }
+
+    /**
+     * @param seed        The seed value
+     * @param octaves     The amount of octaves added by the sample methods
+     * @param lacunarity  The frequency multiplier between two octaves
+     * @param persistence The exponent H of the spectral weights lacunarity^(-H * octave)
+     */
+    public ValueNoise(int seed, int octaves, double lacunarity, double persistence) {
+        super(seed, octaves, lacunarity, persistence);
+    }
+
+    public double noise2d(double x, double y) {
+        int X = (int) fastFloor(x) & 255, Y = (int) fastFloor(y) & 255;
+
+        x -= fastFloor(x);
+        y -= fastFloor(y);
+
+        double u = fade(x), v = fade(y);
+        int[] p = _noisePermutations;
+        int A = p[X] + Y, B = p[X + 1] + Y;
+
+        return lerp(v, lerp(u, value(p[A]), value(p[B])),
+                lerp(u, value(p[A + 1]), value(p[B + 1])));
+    }
+
+    public double noise3d(double x, double y, double z) {
+        int X = (int) fastFloor(x) & 255, Y = (int) fastFloor(y) & 255, Z = (int) fastFloor(z) & 255;
+
+        x -= fastFloor(x);
+        y -= fastFloor(y);
+        z -= fastFloor(z);
+
+        double u = fade(x), v = fade(y), w = fade(z);
+        int[] p = _noisePermutations;
+        int A = p[X] + Y, AA = p[A] + Z, AB = p[A + 1] + Z,
+                B = p[X + 1] + Y, BA = p[B] + Z, BB = p[B + 1] + Z;
+
+        return lerp(w, lerp(v, lerp(u, value(p[AA]), value(p[BA])),
+                lerp(u, value(p[AB]), value(p[BB]))),
+                lerp(v, lerp(u, value(p[AA + 1]), value(p[BA + 1])),
+                        lerp(u, value(p[AB + 1]), value(p[BB + 1]))));
+    }
+
+    //Maps a permutation entry to [-1;1]
+    private static double value(int hash) {
+        return hash * (2.0 / 255) - 1;
+    }
+}
@@ -0,0 +1,480 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Perlin row kernels on the Java Vector API, evaluating as many samples at once as the
+ * preferred vector shape holds doubles (4 with AVX2, 8 with AVX-512), or twice as many floats
+ * on the single precision path. Only create instances through NoiseKernels.vector(int), this
+ * class needs "--add-modules jdk.incubator.vector".
+ * <p/>
+ * Every gradient term is gx * x + c, where gx in {-1, 0, 1} and c only depend on the corner
+ * hash and the fixed y and z of the row. The corner hashes only change when a row crosses a
+ * lattice column, so they are looked up once per column in a scalar pass, and gx and c are
+ * spread over the samples of the column. The products and lerps then run on whole vectors,
+ * without gathers.
+ */
+final class VectorNoiseKernels extends NoiseKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    // grad3d(h, x, y, z) == GRAD3_X[h] * x + GRAD3_Y[h] * y + GRAD3_Z[h] * z for h in [0;16),
+    // exactly, since one of the three products is always zero. The same holds for grad3f.
+    private static final double[] GRAD3_X = new double[16];
+    private static final double[] GRAD3_Y = new double[16];
+    private static final double[] GRAD3_Z = new double[16];
+
+    private static final double[] GRAD2_X = new double[256];
+    private static final double[] GRAD2_Y = new double[256];
+
+    private static final float[] GRAD3F_X = new float[16];
+    private static final float[] GRAD3F_Y = new float[16];
+    private static final float[] GRAD3F_Z = new float[16];
+
+    private static final float[] GRAD2F_X = new float[256];
+    private static final float[] GRAD2F_Y = new float[256];
+
+    static {
+        for (int h = 0; h < 16; h++) {
+            GRAD3_X[h] = PerlinNoise3D.grad3d(h, 1, 0, 0);
+            GRAD3_Y[h] = PerlinNoise3D.grad3d(h, 0, 1, 0);
+            GRAD3_Z[h] = PerlinNoise3D.grad3d(h, 0, 0, 1);
+            GRAD3F_X[h] = PerlinNoise3D.grad3f(h, 1, 0, 0);
+            GRAD3F_Y[h] = PerlinNoise3D.grad3f(h, 0, 1, 0);
+            GRAD3F_Z[h] = PerlinNoise3D.grad3f(h, 0, 0, 1);
+        }
+
+        for (int h = 0; h < 256; h++) {
+            GRAD2_X[h] = PerlinNoise2D.gradX(h);
+            GRAD2_Y[h] = PerlinNoise2D.gradY(h);
+            GRAD2F_X[h] = PerlinNoise2D.gradXf(h);
+            GRAD2F_Y[h] = PerlinNoise2D.gradYf(h);
+        }
+    }
+
+    private final int _length;
+
+    // The lattice columns of the current row: column r covers the samples
+    // [runEnds[r - 1];runEnds[r]) and the gradient indices of its corners are at
+    // runHashes[8 * r..8 * r + 7] (3d) or runHashes[4 * r..4 * r + 3] (2d)
+    private final int[] _runEnds;
+    private final int[] _runHashes;
+    private int _runs;
+
+    // For corner k, gx of sample i is at [2 * k * stride + i] and c at [(2 * k + 1) * stride + i].
+    // The stride is padded by a cache line, rows of a power of two length would otherwise put
+    // all 16 streams into the same L1 sets. The scratch space of a precision is allocated when
+    // it is first used.
+    private final int _stride;
+    private final int _floatStride;
+
+    private double[] _gradients;
+    private double[] _plane0;
+    private double[] _plane1;
+    private final double[] _run = new double[16];
+
+    private float[] _floatGradients;
+    private float[] _floatPlane0;
+    private float[] _floatPlane1;
+    private final float[] _floatRun = new float[16];
+
+    VectorNoiseKernels(int length) {
+        if (SPECIES.length() < 2)
+            throw new UnsupportedOperationException("No vector shape with more than one double lane");
+
+        _length = length;
+        _runEnds = new int[length];
+        _runHashes = new int[8 * length];
+        _stride = length + 8;
+        _floatStride = length + 16;
+    }
+
+    @Override
+    int getLanes() {
+        return SPECIES.length();
+    }
+
+    @Override
+    int getFloatLanes() {
+        return FLOAT_SPECIES.length();
+    }
+
+    // Finds the lattice columns of a row and the gradient indices of their corners AA, BA, AB,
+    // BB, AA+1, BA+1, AB+1, BB+1, in the order of PerlinNoise3D.noise3d
+    private void columns3d(int[] permutations, int[] cellX, int[] cellX1, int offset, int length, int Y, int Y1, int Z, int Z1) {
+        checkLength(length);
+        int[] ends = _runEnds, hashes = _runHashes;
+        int runs = 0;
+
+        for (int start = 0, end; start < length; start = end, runs++) {
+            int X = cellX[offset + start];
+            for (end = start + 1; end < length && cellX[offset + end] == X; end++) ;
+
+            int X1 = cellX1[offset + start];
+            int AA = permutations[permutations[X] + Y], AB = permutations[permutations[X] + Y1],
+                    BA = permutations[permutations[X1] + Y], BB = permutations[permutations[X1] + Y1];
+
+            int k = 8 * runs;
+            hashes[k] = permutations[AA + Z] & 15;
+            hashes[k + 1] = permutations[BA + Z] & 15;
+            hashes[k + 2] = permutations[AB + Z] & 15;
+            hashes[k + 3] = permutations[BB + Z] & 15;
+            hashes[k + 4] = permutations[AA + Z1] & 15;
+            hashes[k + 5] = permutations[BA + Z1] & 15;
+            hashes[k + 6] = permutations[AB + Z1] & 15;
+            hashes[k + 7] = permutations[BB + Z1] & 15;
+            ends[runs] = end;
+        }
+
+        _runs = runs;
+    }
+
+    // Finds the lattice columns of a row and the hashes of their corners 00, 01, 10 and 11,
+    // hashed like PerlinNoise2D.h8
+    private void columns2d(int[] permutations, int[] cellX, int[] cellX1, int offset, int length, int Y, int Y1) {
+        checkLength(length);
+        int[] ends = _runEnds, hashes = _runHashes;
+        int runs = 0;
+
+        for (int start = 0, end; start < length; start = end, runs++) {
+            int X = cellX[offset + start];
+            for (end = start + 1; end < length && cellX[offset + end] == X; end++) ;
+
+            int X1 = cellX1[offset + start];
+            int k = 4 * runs;
+            hashes[k] = permutations[permutations[X] + Y];
+            hashes[k + 1] = permutations[permutations[X1] + Y];
+            hashes[k + 2] = permutations[permutations[X] + Y1];
+            hashes[k + 3] = permutations[permutations[X1] + Y1];
+            ends[runs] = end;
+        }
+
+        _runs = runs;
+    }
+
+    private void checkLength(int length) {
+        if (length > _length)
+            throw new IllegalArgumentException("Row of " + length + " samples exceeds the kernel length " + _length);
+    }
+
+    @Override
+    void octave3d(int[] permutations, int[] cellX, int[] cellX1, double[] fracX, double[] fadeX, int offset, int length,
+                  int Y, int Y1, int Z, int Z1, double yf, double zf, double v, double w, double weight, double[] result) {
+        columns3d(permutations, cellX, cellX1, offset, length, Y, Y1, Z, Z1);
+        gradients3d(yf, zf);
+
+        // The interpolation runs in separate loops, the planes z and z - 1 and their lerp, since
+        // C2 stops inlining the vector operations of a single loop doing all of it. A single
+        // call site keeps plane3d from being inlined twice.
+        for (int plane = 0; plane < 2; plane++)
+            plane3d(4 * plane, fracX, fadeX, offset, length, v, plane == 0 ? _plane0 : _plane1);
+
+        double[] plane0 = _plane0, plane1 = _plane1;
+        int i = 0;
+
+        for (int upper = SPECIES.loopBound(length); i < upper; i += SPECIES.length()) {
+            DoubleVector p0 = DoubleVector.fromArray(SPECIES, plane0, i);
+            DoubleVector p1 = DoubleVector.fromArray(SPECIES, plane1, i);
+
+            DoubleVector.fromArray(SPECIES, result, i).add(lerp(w, p0, p1).mul(weight)).intoArray(result, i);
+        }
+
+        for (; i < length; i++)
+            result[i] += lerp(w, plane0[i], plane1[i]) * weight;
+    }
+
+    // Spreads gx and c of the eight corners over the samples of each column
+    private void gradients3d(double yf, double zf) {
+        if (_gradients == null) {
+            _gradients = new double[16 * _stride];
+            _plane0 = new double[_length];
+            _plane1 = new double[_length];
+        }
+
+        double[] run = _run;
+        int[] hashes = _runHashes;
+        double y1 = yf - 1, z1 = zf - 1;
+
+        for (int r = 0, start = 0; r < _runs; start = _runEnds[r++]) {
+            for (int k = 0; k < 8; k++) {
+                int h = hashes[8 * r + k];
+                run[2 * k] = GRAD3_X[h];
+                run[2 * k + 1] = GRAD3_Y[h] * ((k & 2) == 0 ? yf : y1) + GRAD3_Z[h] * (k < 4 ? zf : z1);
+            }
+
+            fill(16, start, _runEnds[r]);
+        }
+    }
+
+    // Bilinear interpolation of the corners firstCorner..firstCorner + 3 of octave3d into dest
+    private void plane3d(int firstCorner, double[] fracX, double[] fadeX, int offset, int length, double v, double[] dest) {
+        int c = firstCorner;
+        int i = 0;
+
+        for (int upper = SPECIES.loopBound(length); i < upper; i += SPECIES.length()) {
+            DoubleVector x = DoubleVector.fromArray(SPECIES, fracX, offset + i);
+            DoubleVector x1 = x.sub(1);
+            DoubleVector u = DoubleVector.fromArray(SPECIES, fadeX, offset + i);
+
+            lerp(v, lerp(u, grad(c, i, x), grad(c + 1, i, x1)),
+                    lerp(u, grad(c + 2, i, x), grad(c + 3, i, x1))).intoArray(dest, i);
+        }
+
+        for (; i < length; i++) {
+            double x = fracX[offset + i], x1 = x - 1, u = fadeX[offset + i];
+
+            dest[i] = lerp(v, lerp(u, grad(c, i, x), grad(c + 1, i, x1)),
+                    lerp(u, grad(c + 2, i, x), grad(c + 3, i, x1)));
+        }
+    }
+
+    @Override
+    void octave2d(int[] permutations, int[] cellX, int[] cellX1, double[] fracX, double[] fadeX, int offset, int length,
+                  int Y, int Y1, double yf, double v, double weight, double[] result) {
+        columns2d(permutations, cellX, cellX1, offset, length, Y, Y1);
+        gradients2d(yf);
+
+        int i = 0;
+
+        for (int upper = SPECIES.loopBound(length); i < upper; i += SPECIES.length()) {
+            DoubleVector x = DoubleVector.fromArray(SPECIES, fracX, offset + i);
+            DoubleVector u = DoubleVector.fromArray(SPECIES, fadeX, offset + i);
+
+            DoubleVector w0 = lerp(u, grad(0, i, x), grad(1, i, x));
+            DoubleVector w1 = lerp(u, grad(2, i, x), grad(3, i, x));
+
+            DoubleVector.fromArray(SPECIES, result, i).add(lerp(v, w0, w1).mul(weight)).intoArray(result, i);
+        }
+
+        for (; i < length; i++) {
+            double x = fracX[offset + i], u = fadeX[offset + i];
+
+            double w0 = lerp(u, grad(0, i, x), grad(1, i, x));
+            double w1 = lerp(u, grad(2, i, x), grad(3, i, x));
+
+            result[i] += lerp(v, w0, w1) * weight;
+        }
+    }
+
+    // Spreads gx and c of the four corners over the samples of each column
+    private void gradients2d(double yf) {
+        if (_gradients == null)
+            _gradients = new double[16 * _stride];
+
+        double[] run = _run;
+        int[] hashes = _runHashes;
+
+        for (int r = 0, start = 0; r < _runs; start = _runEnds[r++]) {
+            for (int k = 0; k < 4; k++) {
+                int h = hashes[4 * r + k];
+                run[2 * k] = GRAD2_X[h];
+                run[2 * k + 1] = GRAD2_Y[h] * yf;
+            }
+
+            fill(8, start, _runEnds[r]);
+        }
+    }
+
+    // Copies the first streams values of run to the samples [start;end) of their streams
+    private void fill(int streams, int start, int end) {
+        double[] g = _gradients;
+        double[] run = _run;
+
+        // The higher octaves cross a lattice column every sample or two, too short for a fill loop
+        if (end - start <= 2) {
+            for (int k = 0, i = start; k < streams; k++, i += _stride) {
+                g[i] = run[k];
+                g[i + end - start - 1] = run[k];
+            }
+            return;
+        }
+
+        for (int k = 0; k < streams; k++) {
+            double value = run[k];
+            for (int i = k * _stride + start, last = k * _stride + end; i < last; i++)
+                g[i] = value;
+        }
+    }
+
+    // gx * x + c of the given corner for the lanes starting at sample i
+    private DoubleVector grad(int corner, int i, DoubleVector x) {
+        int k = 2 * corner * _stride + i;
+        return DoubleVector.fromArray(SPECIES, _gradients, k).mul(x)
+                .add(DoubleVector.fromArray(SPECIES, _gradients, k + _stride));
+    }
+
+    private double grad(int corner, int i, double x) {
+        int k = 2 * corner * _stride + i;
+        return _gradients[k] * x + _gradients[k + _stride];
+    }
+
+    // a + t * (b - a), in the same order as the scalar lerp
+    private static DoubleVector lerp(DoubleVector t, DoubleVector a, DoubleVector b) {
+        return a.add(t.mul(b.sub(a)));
+    }
+
+    private static DoubleVector lerp(double t, DoubleVector a, DoubleVector b) {
+        return a.add(b.sub(a).mul(t));
+    }
+
+    private static double lerp(double t, double a, double b) {
+        return a + t * (b - a);
+    }
+
+    // The single precision kernels below are the ones above with floats
+
+    @Override
+    void octave3f(int[] permutations, int[] cellX, int[] cellX1, float[] fracX, float[] fadeX, int offset, int length,
+                  int Y, int Y1, int Z, int Z1, float yf, float zf, float v, float w, float weight, float[] result) {
+        columns3d(permutations, cellX, cellX1, offset, length, Y, Y1, Z, Z1);
+        gradients3f(yf, zf);
+
+        for (int plane = 0; plane < 2; plane++)
+            plane3f(4 * plane, fracX, fadeX, offset, length, v, plane == 0 ? _floatPlane0 : _floatPlane1);
+
+        float[] plane0 = _floatPlane0, plane1 = _floatPlane1;
+        int i = 0;
+
+        for (int upper = FLOAT_SPECIES.loopBound(length); i < upper; i += FLOAT_SPECIES.length()) {
+            FloatVector p0 = FloatVector.fromArray(FLOAT_SPECIES, plane0, i);
+            FloatVector p1 = FloatVector.fromArray(FLOAT_SPECIES, plane1, i);
+
+            FloatVector.fromArray(FLOAT_SPECIES, result, i).add(lerp(w, p0, p1).mul(weight)).intoArray(result, i);
+        }
+
+        for (; i < length; i++)
+            result[i] += lerp(w, plane0[i], plane1[i]) * weight;
+    }
+
+    private void gradients3f(float yf, float zf) {
+        if (_floatGradients == null) {
+            _floatGradients = new float[16 * _floatStride];
+            _floatPlane0 = new float[_length];
+            _floatPlane1 = new float[_length];
+        }
+
+        float[] run = _floatRun;
+        int[] hashes = _runHashes;
+        float y1 = yf - 1, z1 = zf - 1;
+
+        for (int r = 0, start = 0; r < _runs; start = _runEnds[r++]) {
+            for (int k = 0; k < 8; k++) {
+                int h = hashes[8 * r + k];
+                run[2 * k] = GRAD3F_X[h];
+                run[2 * k + 1] = GRAD3F_Y[h] * ((k & 2) == 0 ? yf : y1) + GRAD3F_Z[h] * (k < 4 ? zf : z1);
+            }
+
+            fillFloat(16, start, _runEnds[r]);
+        }
+    }
+
+    private void plane3f(int firstCorner, float[] fracX, float[] fadeX, int offset, int length, float v, float[] dest) {
+        int c = firstCorner;
+        int i = 0;
+
+        for (int upper = FLOAT_SPECIES.loopBound(length); i < upper; i += FLOAT_SPECIES.length()) {
+            FloatVector x = FloatVector.fromArray(FLOAT_SPECIES, fracX, offset + i);
+            FloatVector x1 = x.sub(1);
+            FloatVector u = FloatVector.fromArray(FLOAT_SPECIES, fadeX, offset + i);
+
+            lerp(v, lerp(u, grad(c, i, x), grad(c + 1, i, x1)),
+                    lerp(u, grad(c + 2, i, x), grad(c + 3, i, x1))).intoArray(dest, i);
+        }
+
+        for (; i < length; i++) {
+            float x = fracX[offset + i], x1 = x - 1, u = fadeX[offset + i];
+
+            dest[i] = lerp(v, lerp(u, grad(c, i, x), grad(c + 1, i, x1)),
+                    lerp(u, grad(c + 2, i, x), grad(c + 3, i, x1)));
+        }
+    }
+
+    @Override
+    void octave2f(int[] permutations, int[] cellX, int[] cellX1, float[] fracX, float[] fadeX, int offset, int length,
+                  int Y, int Y1, float yf, float v, float weight, float[] result) {
+        columns2d(permutations, cellX, cellX1, offset, length, Y, Y1);
+        gradients2f(yf);
+
+        int i = 0;
+
+        for (int upper = FLOAT_SPECIES.loopBound(length); i < upper; i += FLOAT_SPECIES.length()) {
+            FloatVector x = FloatVector.fromArray(FLOAT_SPECIES, fracX, offset + i);
+            FloatVector u = FloatVector.fromArray(FLOAT_SPECIES, fadeX, offset + i);
+
+            FloatVector w0 = lerp(u, grad(0, i, x), grad(1, i, x));
+            FloatVector w1 = lerp(u, grad(2, i, x), grad(3, i, x));
+
+            FloatVector.fromArray(FLOAT_SPECIES, result, i).add(lerp(v, w0, w1).mul(weight)).intoArray(result, i);
+        }
+
+        for (; i < length; i++) {
+            float x = fracX[offset + i], u = fadeX[offset + i];
+
+            float w0 = lerp(u, grad(0, i, x), grad(1, i, x));
+            float w1 = lerp(u, grad(2, i, x), grad(3, i, x));
+
+            result[i] += lerp(v, w0, w1) * weight;
+        }
+    }
+
+    private void gradients2f(float yf) {
+        if (_floatGradients == null)
+            _floatGradients = new float[16 * _floatStride];
+
+        float[] run = _floatRun;
+        int[] hashes = _runHashes;
+
+        for (int r = 0, start = 0; r < _runs; start = _runEnds[r++]) {
+            for (int k = 0; k < 4; k++) {
+                int h = hashes[4 * r + k];
+                run[2 * k] = GRAD2F_X[h];
+                run[2 * k + 1] = GRAD2F_Y[h] * yf;
+            }
+
+            fillFloat(8, start, _runEnds[r]);
+        }
+    }
+
+    private void fillFloat(int streams, int start, int end) {
+        float[] g = _floatGradients;
+        float[] run = _floatRun;
+
+        if (end - start <= 2) {
+            for (int k = 0, i = start; k < streams; k++, i += _floatStride) {
+                g[i] = run[k];
+                g[i + end - start - 1] = run[k];
+            }
+            return;
+        }
+
+        for (int k = 0; k < streams; k++) {
+            float value = run[k];
+            for (int i = k * _floatStride + start, last = k * _floatStride + end; i < last; i++)
+                g[i] = value;
+        }
+    }
+
+    private FloatVector grad(int corner, int i, FloatVector x) {
+        int k = 2 * corner * _floatStride + i;
+        return FloatVector.fromArray(FLOAT_SPECIES, _floatGradients, k).mul(x)
+                .add(FloatVector.fromArray(FLOAT_SPECIES, _floatGradients, k + _floatStride));
+    }
+
+    private float grad(int corner, int i, float x) {
+        int k = 2 * corner * _floatStride + i;
+        return _floatGradients[k] * x + _floatGradients[k + _floatStride];
+    }
+
+    private static FloatVector lerp(FloatVector t, FloatVector a, FloatVector b) {
+        return a.add(t.mul(b.sub(a)));
+    }
+
+    private static FloatVector lerp(float t, FloatVector a, FloatVector b) {
+        return a.add(b.sub(a).mul(t));
+    }
+
+    private static float lerp(float t, float a, float b) {
+        return a + t * (b - a);
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * Worley (cellular) noise: every lattice cell holds one feature point at a pseudorandom position
+ * taken from the permutation table, and the noise is the distance to the nearest feature point,
+ * F1, searched in the cell of the sample and its neighbours. It is mapped to 2 * F1 - 1, so an
+ * octave is -1 at the feature points and rises towards the cell borders, rarely above 1.4 and
+ * to about 1.45 at most. The feature point of the own cell is at most a cell diagonal away, which
+ * bounds it by 2 * sqrt(2) - 1 in 2d and 2 * sqrt(3) - 1 in 3d. It is the most expensive of the
+ * noise sources, 9 cells per sample in 2d and 27 in 3d.
+ */
+public class WorleyNoise extends FractalNoise {
+
+    public static final double DEFAULT_LACUNARITY = 2.1379201;
+    public static final double DEFAULT_PERSISTENCE = 0.836281;
+    public static final int DEFAULT_OCTAVES = 3;
+
+    public WorleyNoise(int seed) {
+        this(seed, DEFAULT_OCTAVES, DEFAULT_LACUNARITY, DEFAULT_PERSISTENCE);
+    }
+
+    /**
+     * @param seed        The seed value
+     * @param octaves     The amount of octaves added by the sample methods
+     * @param lacunarity  The frequency multiplier between two octaves
+     * @param persistence The exponent H of the spectral weights lacunarity^(-H * octave)
+     */
+    public WorleyNoise(int seed, int octaves, double lacunarity, double persistence) {
+        super(seed, octaves, lacunarity, persistence);
+    }
+
+    public double noise2d(double x, double y) {
+        int floorX = (int) fastFloor(x), floorY = (int) fastFloor(y);
+        int[] p = _noisePermutations;
+        double nearest = Double.MAX_VALUE;
+
+        for (int Y = floorY - 1; Y <= floorY + 1; Y++) {
+            for (int X = floorX - 1; X <= floorX + 1; X++) {
+                int h = p[p[X & 255] + (Y & 255)];
+                double dx = X + offset(p[h]) - x, dy = Y + offset(p[h + 1]) - y;
+                nearest = Math.min(nearest, dx * dx + dy * dy);
+            }
+        }
+
+        return 2 * Math.sqrt(nearest) - 1;
+    }
+
+    public double noise3d(double x, double y, double z) {
+        int floorX = (int) fastFloor(x), floorY = (int) fastFloor(y), floorZ = (int) fastFloor(z);
+        int[] p = _noisePermutations;
+        double nearest = Double.MAX_VALUE;
+
+        for (int Z = floorZ - 1; Z <= floorZ + 1; Z++) {
+            for (int Y = floorY - 1; Y <= floorY + 1; Y++) {
+                for (int X = floorX - 1; X <= floorX + 1; X++) {
+                    int h = p[p[p[X & 255] + (Y & 255)] + (Z & 255)];
+                    double dx = X + offset(p[h]) - x, dy = Y + offset(p[h + 1]) - y, dz = Z + offset(p[h + 2]) - z;
+                    nearest = Math.min(nearest, dx * dx + dy * dy + dz * dz);
+                }
+            }
+        }
+
+        return 2 * Math.sqrt(nearest) - 1;
+    }
+
+    //Position of a feature point inside its cell, the centre of one of 256 bins
+    private static double offset(int hash) {
+        return (hash + 0.5) / 256;
+    }
+}
@@ -0,0 +1,66 @@
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Runs the benchmarks with the GC profiler enabled and prints a summary in ns/op and ops/sec
+ * next to the allocated bytes per op. An op is one sample, except for ErosionBenchmark where it
+ * is a whole map. Command line arguments are passed to JMH, e.g. a regular expression to select
+ * benchmarks. The single precision deviation of the noise, the compression of FieldCodec and the
+ * moments of the FastRandom distributions are reported first.
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Throwable {
+        VectorBenchmark.report();
+        CodecBenchmark.report();
+        FastRandomBenchmark.report();
+
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        Collection<RunResult> results = new Runner(options).run();
+
+        System.out.println();
+        System.out.println(String.format("%-50s %12s %16s %12s", "Benchmark", "ns/op", "ops/sec", "B/op"));
+
+        for (RunResult result : results) {
+            Result primary = result.getPrimaryResult();
+            Map<String, Result> secondary = result.getSecondaryResults();
+            Result allocated = secondary.get("gc.alloc.rate.norm");
+
+            String name = result.getParams().getBenchmark().replaceFirst("^bench\\.", "");
+            for (String key : result.getParams().getParamsKeys())
+                name += " " + key + "=" + result.getParams().getParam(key);
+
+            double nsPerOp = primary.getScore() * nanosPerUnit(primary.getScoreUnit());
+            System.out.println(String.format("%-50s %12.2f %16.2f %12s", name, nsPerOp, 1e9 / nsPerOp,
+                    allocated == null ? "-" : String.format("%.3f", allocated.getScore())));
+        }
+    }
+
+    //Nanoseconds per unit of an average time score such as "ms/op"
+    private static double nanosPerUnit(String scoreUnit) {
+        switch (scoreUnit.substring(0, scoreUnit.indexOf('/'))) {
+            case "s":
+                return 1e9;
+            case "ms":
+                return 1e6;
+            case "us":
+                return 1e3;
+            default:
+                return 1;
+        }
+    }
+}
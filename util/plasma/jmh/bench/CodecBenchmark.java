@@ -0,0 +1,88 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FieldCodec encoding and decoding of a mixed field of {@link #WIDTH} x {@link #HEIGHT}
+ * samples, the reported time is per sample. {@link #report()} prints the compression ratio
+ * against 4 byte floats and the largest error for the plasma, Perlin and mixed field.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodecBenchmark {
+
+    // One tile of the Plasma applet
+    static final int WIDTH = 1024;
+    static final int HEIGHT = 128;
+
+    @Param({"8", "16"})
+    public int bits;
+
+    private Object _mixed;
+    private byte[] _encoded;
+
+    @Setup
+    public void setup() throws Throwable {
+        _mixed = generate()[2];
+        _encoded = (byte[]) Kernels.ENCODE_FIELD.invokeExact(_mixed, bits);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WIDTH * HEIGHT)
+    public byte[] encode() throws Throwable {
+        return (byte[]) Kernels.ENCODE_FIELD.invokeExact(_mixed, bits);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WIDTH * HEIGHT)
+    public Object decode() throws Throwable {
+        return (Object) Kernels.DECODE_FIELD.invokeExact(_encoded);
+    }
+
+    /**
+     * Prints the compression ratio and the largest difference between the samples and their
+     * decoded values next to the bound of FieldCodec for 8 and 16 bits.
+     */
+    static void report() throws Throwable {
+        Object[] fields = generate();
+        String[] names = {"plasma", "perlin", "mixed"};
+
+        for (int bits = 8; bits <= 16; bits += 8) {
+            for (int f = 0; f < fields.length; f++) {
+                byte[] encoded = (byte[]) Kernels.ENCODE_FIELD.invokeExact(fields[f], bits);
+                Object decoded = (Object) Kernels.DECODE_FIELD.invokeExact(encoded);
+                double max = 0;
+
+                for (int y = 0; y < HEIGHT; y++)
+                    for (int x = 0; x < WIDTH; x++)
+                        max = Math.max(max, Math.abs((float) Kernels.FIELD_GET.invokeExact(fields[f], x, y)
+                                - (float) Kernels.FIELD_GET.invokeExact(decoded, x, y)));
+
+                System.out.println(String.format("bits=%d %s: ratio %.2f, %.2f bits/sample, max error %.3g, bound %.3g",
+                        bits, names[f], 4.0 * WIDTH * HEIGHT / encoded.length, 8.0 * encoded.length / (WIDTH * HEIGHT),
+                        max, (float) Kernels.CODEC_MAX_ERROR.invokeExact(bits)));
+            }
+        }
+        System.out.println();
+    }
+
+    //The plasma, Perlin and mixed field of one tile with the settings of the Plasma applet
+    private static Object[] generate() throws Throwable {
+        Object plasma = (Object) Kernels.NEW_FIELD.invokeExact(WIDTH, HEIGHT);
+        Object perlin = (Object) Kernels.NEW_FIELD.invokeExact(WIDTH, HEIGHT);
+        Object mixed = (Object) Kernels.NEW_FIELD.invokeExact(WIDTH, HEIGHT);
+
+        Object engine = (Object) Kernels.NEW_ENGINE.invokeExact(ForkJoinPool.commonPool(),
+                (Object) Kernels.NEW_PLASMA.invokeExact(42, WIDTH, HEIGHT, 1.0f),
+                (Object) Kernels.NEW_PERLIN_3D.invokeExact(42, 3, 2.1379201, 0.836281));
+        Kernels.GENERATE.invokeExact(engine, plasma, perlin, mixed);
+        return new Object[]{plasma, perlin, mixed};
+    }
+}
@@ -0,0 +1,65 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thermal and hydraulic erosion of a mixed field of size x size samples on the common pool, up
+ * to the 4k x 4k maps the erosion is meant for. Every invocation starts from a fresh copy of the
+ * field and the reported time is per map. Run the large map alone with "-p size=4096", a single
+ * invocation takes seconds.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ErosionBenchmark {
+
+    static final int THERMAL_ITERATIONS = 50;
+    static final float DROPLETS_PER_SAMPLE = 0.5f;
+    static final float HEIGHT_SCALE = 200;
+
+    @Param({"1024", "4096"})
+    public int size;
+
+    private float[] _source;
+    private Object _heights;
+    private Object _erosion;
+
+    @Setup(Level.Trial)
+    public void setup() throws Throwable {
+        Object plasma = (Object) Kernels.NEW_FIELD.invokeExact(size, size);
+        Object perlin = (Object) Kernels.NEW_FIELD.invokeExact(size, size);
+        Object mixed = (Object) Kernels.NEW_FIELD.invokeExact(size, size);
+
+        Object engine = (Object) Kernels.NEW_ENGINE.invokeExact(ForkJoinPool.commonPool(),
+                (Object) Kernels.NEW_PLASMA.invokeExact(42, size, 128, 1.0f),
+                (Object) Kernels.NEW_PERLIN_3D.invokeExact(42, 3, 2.1379201, 0.836281));
+        Kernels.GENERATE.invokeExact(engine, plasma, perlin, mixed);
+
+        _source = ((float[]) Kernels.FIELD_ARRAY.invokeExact(mixed)).clone();
+        _heights = mixed;
+        _erosion = (Object) Kernels.NEW_EROSION.invokeExact(ForkJoinPool.commonPool(), 42L);
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() throws Throwable {
+        System.arraycopy(_source, 0, (float[]) Kernels.FIELD_ARRAY.invokeExact(_heights), 0, _source.length);
+    }
+
+    @Benchmark
+    public Object thermal() throws Throwable {
+        Kernels.THERMAL.invokeExact(_erosion, _heights, THERMAL_ITERATIONS, 0.5f / size, 0.25f);
+        return _heights;
+    }
+
+    @Benchmark
+    public Object hydraulic() throws Throwable {
+        Kernels.HYDRAULIC.invokeExact(_erosion, _heights, DROPLETS_PER_SAMPLE, HEIGHT_SCALE);
+        return _heights;
+    }
+}
@@ -0,0 +1,194 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FastRandom draws, single and in bulk, child streams split off by index and the stateless
+ * CoordinateHash, per position and per row. The reported time is per drawn value or child. {@link #report()} prints the moments and tail
+ * probabilities of the normal and exponential samplers next to their exact values.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FastRandomBenchmark {
+
+    static final int DRAWS = 1024;
+
+    private Object _random;
+    private int[] _ints = new int[DRAWS];
+    private float[] _floats = new float[DRAWS];
+    private double[] _doubles = new double[DRAWS];
+
+    @Setup
+    public void setup() throws Throwable {
+        _random = (Object) Kernels.NEW_FAST_RANDOM.invokeExact(42L);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DRAWS)
+    public long randomLong() throws Throwable {
+        long sum = 0;
+        for (int i = 0; i < DRAWS; i++)
+            sum += (long) Kernels.RANDOM_LONG.invokeExact(_random);
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DRAWS)
+    public int randomInt() throws Throwable {
+        int sum = 0;
+        for (int i = 0; i < DRAWS; i++)
+            sum += (int) Kernels.RANDOM_INT.invokeExact(_random);
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DRAWS)
+    public float randomFloat() throws Throwable {
+        float sum = 0;
+        for (int i = 0; i < DRAWS; i++)
+            sum += (float) Kernels.RANDOM_FLOAT.invokeExact(_random);
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DRAWS)
+    public int[] randomInts() throws Throwable {
+        Kernels.RANDOM_INTS.invokeExact(_random, _ints, 0, DRAWS);
+        return _ints;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DRAWS)
+    public float[] randomFloats() throws Throwable {
+        Kernels.RANDOM_FLOATS.invokeExact(_random, _floats, 0, DRAWS);
+        return _floats;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DRAWS)
+    public long splitIndex() throws Throwable {
+        long sum = 0;
+        for (int i = 0; i < DRAWS; i++)
+            sum += (long) Kernels.RANDOM_LONG.invokeExact((Object) Kernels.SPLIT_RANDOM.invokeExact(_random, (long) i));
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DRAWS)
+    public double randomDouble() throws Throwable {
+        double sum = 0;
+        for (int i = 0; i < DRAWS; i++)
+            sum += (double) Kernels.RANDOM_DOUBLE.invokeExact(_random);
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DRAWS)
+    public double standNormalDistrDouble() throws Throwable {
+        double sum = 0;
+        for (int i = 0; i < DRAWS; i++)
+            sum += (double) Kernels.STAND_NORMAL.invokeExact(_random);
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DRAWS)
+    public double normalDouble() throws Throwable {
+        double sum = 0;
+        for (int i = 0; i < DRAWS; i++)
+            sum += (double) Kernels.NORMAL.invokeExact(_random);
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DRAWS)
+    public double[] normalDoubles() throws Throwable {
+        Kernels.NORMAL_DOUBLES.invokeExact(_random, _doubles, 0, DRAWS);
+        return _doubles;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DRAWS)
+    public float[] normalFloats() throws Throwable {
+        Kernels.NORMAL_FLOATS.invokeExact(_random, _floats, 0, DRAWS);
+        return _floats;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DRAWS)
+    public double exponentialDouble() throws Throwable {
+        double sum = 0;
+        for (int i = 0; i < DRAWS; i++)
+            sum += (double) Kernels.EXPONENTIAL.invokeExact(_random);
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DRAWS)
+    public float coordinateHash() throws Throwable {
+        float sum = 0;
+        for (int i = 0; i < DRAWS; i++)
+            sum += (float) Kernels.HASH_UNIT.invokeExact(i, 17, 0, 42);
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DRAWS)
+    public float[] coordinateHashRow() throws Throwable {
+        Kernels.HASH_UNIT_ROW.invokeExact(0, 17, 0, 42, _floats, 0, DRAWS);
+        return _floats;
+    }
+
+    /**
+     * Prints mean, variance, skewness, kurtosis and a tail probability of 4M values of the
+     * polar and the ziggurat normal sampler and of the exponential sampler. With this many
+     * values the mean and variance are within about 0.002 of the exact ones.
+     */
+    static void report() throws Throwable {
+        Object random = (Object) Kernels.NEW_FAST_RANDOM.invokeExact(42L);
+        double[] values = new double[4 * 1024 * 1024];
+
+        for (int i = 0; i < values.length; i++)
+            values[i] = (double) Kernels.STAND_NORMAL.invokeExact(random);
+        printMoments("standNormalDistrDouble", values, 3, 0, 1, 0, 3, 2.6998e-3);
+
+        Kernels.NORMAL_DOUBLES.invokeExact(random, values, 0, values.length);
+        printMoments("normalDouble", values, 3, 0, 1, 0, 3, 2.6998e-3);
+
+        Kernels.EXPONENTIAL_DOUBLES.invokeExact(random, values, 0, values.length);
+        printMoments("exponentialDouble", values, 5, 1, 1, 2, 9, Math.exp(-5));
+        System.out.println();
+    }
+
+    private static void printMoments(String name, double[] values, double tail,
+                                     double mean, double variance, double skewness, double kurtosis, double tailProbability) {
+        double sum = 0;
+        for (double v : values)
+            sum += v;
+        double m = sum / values.length;
+
+        double m2 = 0, m3 = 0, m4 = 0;
+        long beyond = 0;
+        for (double v : values) {
+            double d = v - m;
+            m2 += d * d;
+            m3 += d * d * d;
+            m4 += d * d * d * d;
+            if (Math.abs(v) > tail)
+                beyond++;
+        }
+        m2 /= values.length;
+        m3 /= values.length;
+        m4 /= values.length;
+
+        System.out.println(String.format("%s: mean %.4f (%.0f), variance %.4f (%.0f), skewness %.4f (%.0f), kurtosis %.4f (%.0f), P(|x| > %.0f) %.3e (%.3e)",
+                name, m, mean, m2, variance, m3 / Math.pow(m2, 1.5), skewness, m4 / (m2 * m2), kurtosis,
+                tail, (double) beyond / values.length, tailProbability));
+    }
+}
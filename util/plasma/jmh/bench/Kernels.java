@@ -0,0 +1,150 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Method handles to the generator classes. JMH refuses benchmarks in the default package and
+ * Java code can not import classes from it, so the benchmarks reach the kernels through
+ * handles in which every default package type is adapted to Object. The handles are static
+ * final constants, which the JIT inlines like a direct call.
+ */
+final class Kernels {
+
+    static final MethodHandle NEW_PERLIN_2D = constructor("PerlinNoise2D", int.class, int.class, double.class, double.class);
+    static final MethodHandle NOISE_2D = method("PerlinNoise2D", "noise2d", double.class, double.class, double.class);
+    static final MethodHandle FBM_2D = method("PerlinNoise2D", "fBm2d", double.class, double.class, double.class);
+    static final MethodHandle FBM_2D_REGION = method("PerlinNoise2D", "fBm2dRegion", void.class,
+            double.class, double.class, double.class, int.class, int.class, float[].class);
+    static final MethodHandle FBM_2D_GRADIENT = method("PerlinNoise2D", "fBm2dGradient", double.class, double.class, double.class, double[].class);
+    static final MethodHandle FBM_2F_REGION = method("PerlinNoise2D", "fBm2fRegion", void.class,
+            float.class, float.class, float.class, int.class, int.class, float[].class);
+
+    static final MethodHandle NEW_PERLIN_3D = constructor("PerlinNoise3D", int.class, int.class, double.class, double.class);
+    static final MethodHandle NOISE_3D = method("PerlinNoise3D", "noise3d", double.class, double.class, double.class, double.class);
+    static final MethodHandle FBM_3D = method("PerlinNoise3D", "fBm3d", double.class, double.class, double.class, double.class);
+    static final MethodHandle FBM_3D_REGION = method("PerlinNoise3D", "fBm3dRegion", void.class,
+            double.class, double.class, double.class, double.class, int.class, int.class, int.class, float[].class);
+    static final MethodHandle FBM_3D_LOD_REGION = method("PerlinNoise3D", "fBm3dLodRegion", void.class,
+            double.class, double.class, double.class, double.class, int.class, int.class, int.class, float[].class);
+    static final MethodHandle LOD_OCTAVES_3D = method("PerlinNoise3D", "getLodOctaves", int.class, double.class);
+    static final MethodHandle FBM_3D_GRADIENT = method("PerlinNoise3D", "fBm3dGradient", double.class,
+            double.class, double.class, double.class, double[].class);
+    static final MethodHandle FBM_3F_REGION = method("PerlinNoise3D", "fBm3fRegion", void.class,
+            float.class, float.class, float.class, float.class, int.class, int.class, int.class, float[].class);
+
+    static final MethodHandle NEW_PERLIN = constructor("PerlinNoise", int.class, int.class, double.class, double.class);
+    static final MethodHandle NEW_SIMPLEX = constructor("SimplexNoise", int.class, int.class, double.class, double.class);
+    static final MethodHandle NEW_VALUE = constructor("ValueNoise", int.class, int.class, double.class, double.class);
+    static final MethodHandle NEW_WORLEY = constructor("WorleyNoise", int.class, int.class, double.class, double.class);
+    static final MethodHandle SAMPLE_2D_REGION = method("NoiseSource", "sample2dRegion", void.class,
+            double.class, double.class, double.class, int.class, int.class, float[].class);
+    static final MethodHandle SAMPLE_3D_REGION = method("NoiseSource", "sample3dRegion", void.class,
+            double.class, double.class, double.class, double.class, int.class, int.class, int.class, float[].class);
+
+    // Resolving this handle initializes NoiseKernels, which reads the plasma.vector property
+    static final MethodHandle VECTOR_LANES = staticMethod("NoiseKernels", "getVectorLanes", int.class);
+    static final MethodHandle VECTOR_FLOAT_LANES = staticMethod("NoiseKernels", "getVectorFloatLanes", int.class);
+
+    static final MethodHandle NEW_FIELD = staticMethod("Field", "onHeap", type("Field"), int.class, int.class);
+
+    static final MethodHandle NEW_PLASMA = constructor("PlasmaGenerator", int.class, int.class, int.class, float.class);
+    static final MethodHandle CALC_PLASMA_PIECE = method("PlasmaGenerator", "calcPlasmaPiece", void.class,
+            type("Field"), int.class, int.class);
+    static final MethodHandle DIVIDE_GRID = method("PlasmaGenerator", "DivideGrid", void.class,
+            type("Field"), float.class, float.class, float.class, float.class, float.class, float.class, float.class, float.class);
+
+    static final MethodHandle NEW_ENGINE = constructor("GenerationEngine", ForkJoinPool.class,
+            type("PlasmaGenerator"), type("PerlinNoise3D"));
+    static final MethodHandle GENERATE = method("GenerationEngine", "generate", void.class, type("Field"), type("Field"), type("Field"));
+    static final MethodHandle FIELD_GET = method("Field", "get", float.class, int.class, int.class);
+    static final MethodHandle FIELD_ARRAY = method("Field", "array", float[].class);
+
+    static final MethodHandle ENCODE_FIELD = staticMethod("FieldCodec", "encode", byte[].class, type("Field"), int.class);
+    static final MethodHandle DECODE_FIELD = staticMethod("FieldCodec", "decode", type("Field"), byte[].class);
+    static final MethodHandle CODEC_MAX_ERROR = staticMethod("FieldCodec", "getMaxError", float.class, int.class);
+
+    static final MethodHandle NEW_EROSION = constructor("Erosion", ForkJoinPool.class, long.class);
+    static final MethodHandle THERMAL = method("Erosion", "thermal", void.class, type("Field"), int.class, float.class, float.class);
+    static final MethodHandle HYDRAULIC = method("Erosion", "hydraulic", void.class, type("Field"), float.class, float.class);
+
+    static final MethodHandle NEW_FAST_RANDOM = constructor("FastRandom", long.class);
+    static final MethodHandle RANDOM_LONG = method("FastRandom", "randomLong", long.class);
+    static final MethodHandle RANDOM_INT = method("FastRandom", "randomInt", int.class);
+    static final MethodHandle RANDOM_FLOAT = method("FastRandom", "randomFloat", float.class);
+    static final MethodHandle RANDOM_INTS = method("FastRandom", "randomInts", void.class, int[].class, int.class, int.class);
+    static final MethodHandle RANDOM_FLOATS = method("FastRandom", "randomFloats", void.class, float[].class, int.class, int.class);
+    static final MethodHandle SPLIT_RANDOM = method("FastRandom", "split", type("FastRandom"), long.class);
+    static final MethodHandle RANDOM_DOUBLE = method("FastRandom", "randomDouble", double.class);
+    static final MethodHandle STAND_NORMAL = method("FastRandom", "standNormalDistrDouble", double.class);
+    static final MethodHandle NORMAL = method("FastRandom", "normalDouble", double.class);
+    static final MethodHandle EXPONENTIAL = method("FastRandom", "exponentialDouble", double.class);
+    static final MethodHandle NORMAL_DOUBLES = method("FastRandom", "normalDoubles", void.class, double[].class, int.class, int.class);
+    static final MethodHandle NORMAL_FLOATS = method("FastRandom", "normalFloats", void.class, float[].class, int.class, int.class);
+    static final MethodHandle EXPONENTIAL_DOUBLES = method("FastRandom", "exponentialDoubles", void.class, double[].class, int.class, int.class);
+
+    static final MethodHandle HASH_UNIT = staticMethod("CoordinateHash", "unit", float.class, int.class, int.class, int.class, int.class);
+    static final MethodHandle HASH_UNIT_ROW = staticMethod("CoordinateHash", "unitRow", void.class,
+            int.class, int.class, int.class, int.class, float[].class, int.class, int.class);
+
+    private Kernels() {
+    }
+
+    private static Class<?> type(String className) {
+        try {
+            return Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Kernel class " + className + " is not available", e);
+        }
+    }
+
+    private static MethodHandle constructor(String className, Class<?>... parameters) {
+        try {
+            Class<?> target = type(className);
+            return erase(lookup(target).findConstructor(target, MethodType.methodType(void.class, parameters)));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Kernel class " + className + " is not available", e);
+        }
+    }
+
+    private static MethodHandle method(String className, String name, Class<?> returnType, Class<?>... parameters) {
+        try {
+            Class<?> target = type(className);
+            return erase(lookup(target).findVirtual(target, name, MethodType.methodType(returnType, parameters)));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Kernel " + className + "." + name + " is not available", e);
+        }
+    }
+
+    private static MethodHandle staticMethod(String className, String name, Class<?> returnType, Class<?>... parameters) {
+        try {
+            Class<?> target = type(className);
+            return erase(lookup(target).findStatic(target, name, MethodType.methodType(returnType, parameters)));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Kernel " + className + "." + name + " is not available", e);
+        }
+    }
+
+    // Replaces every default package type in the signature by Object
+    private static MethodHandle erase(MethodHandle handle) {
+        MethodType type = handle.type();
+        if (isDefaultPackage(type.returnType()))
+            type = type.changeReturnType(Object.class);
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (isDefaultPackage(type.parameterType(i)))
+                type = type.changeParameterType(i, Object.class);
+        }
+        return handle.asType(type);
+    }
+
+    private static boolean isDefaultPackage(Class<?> type) {
+        return !type.isPrimitive() && !type.isArray() && type.getPackageName().isEmpty();
+    }
+
+    // Some kernels are package-private, so a private lookup in the target class is used
+    private static MethodHandles.Lookup lookup(Class<?> target) throws IllegalAccessException {
+        return MethodHandles.privateLookupIn(target, MethodHandles.lookup());
+    }
+}
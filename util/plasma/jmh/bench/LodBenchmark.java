@@ -0,0 +1,50 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full fBm3dRegion against fBm3dLodRegion of a 9 octave noise for several sample spacings.
+ * Every invocation fills one slice of {@link #SIZE} x {@link #SIZE} samples, so the reported
+ * time is per sample.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LodBenchmark {
+
+    static final int SIZE = 128;
+    static final int OCTAVES = 9;
+
+    @Param({"0.005", "0.05", "0.5"})
+    public double step;
+
+    private Object _noise3d;
+    private float[] _region;
+
+    @Setup
+    public void setup() throws Throwable {
+        _noise3d = (Object) Kernels.NEW_PERLIN_3D.invokeExact(42, OCTAVES, 2.1379201, 0.836281);
+        _region = new float[SIZE * SIZE];
+        System.out.println();
+        System.out.println("Octaves evaluated at step " + step + ": " + (int) Kernels.LOD_OCTAVES_3D.invokeExact(_noise3d, step) + " of " + OCTAVES);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE * SIZE)
+    public float[] fBm3dRegion() throws Throwable {
+        Kernels.FBM_3D_REGION.invokeExact(_noise3d, 0.0, 0.0, 0.37, step, SIZE, SIZE, 1, _region);
+        return _region;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE * SIZE)
+    public float[] fBm3dLodRegion() throws Throwable {
+        Kernels.FBM_3D_LOD_REGION.invokeExact(_noise3d, 0.0, 0.0, 0.37, step, SIZE, SIZE, 1, _region);
+        return _region;
+    }
+}
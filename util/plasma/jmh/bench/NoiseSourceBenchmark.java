@@ -0,0 +1,54 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The region methods of the NoiseSource implementations with the same fBm settings. Every
+ * invocation evaluates one row of {@link PerlinBenchmark#ROW} samples, so the reported time is
+ * per sample.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NoiseSourceBenchmark {
+
+    @Param({"perlin", "simplex", "value", "worley"})
+    public String noise;
+
+    @Param({"1", "3"})
+    public int octaves;
+
+    private Object _noise;
+    private float[] _region;
+
+    @Setup
+    public void setup() throws Throwable {
+        MethodHandle constructor = noise.equals("perlin") ? Kernels.NEW_PERLIN
+                : noise.equals("simplex") ? Kernels.NEW_SIMPLEX
+                : noise.equals("value") ? Kernels.NEW_VALUE
+                : Kernels.NEW_WORLEY;
+
+        _noise = (Object) constructor.invokeExact(42, octaves, 2.1379201, 0.836281);
+        _region = new float[PerlinBenchmark.ROW];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PerlinBenchmark.ROW)
+    public float[] sample2dRegion() throws Throwable {
+        Kernels.SAMPLE_2D_REGION.invokeExact(_noise, 0.0, 0.37, PerlinBenchmark.STEP, PerlinBenchmark.ROW, 1, _region);
+        return _region;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PerlinBenchmark.ROW)
+    public float[] sample3dRegion() throws Throwable {
+        Kernels.SAMPLE_3D_REGION.invokeExact(_noise, 0.0, 0.0, 0.37, PerlinBenchmark.STEP, PerlinBenchmark.ROW, 1, 1, _region);
+        return _region;
+    }
+}
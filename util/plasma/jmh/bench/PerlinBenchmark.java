@@ -0,0 +1,131 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Perlin noise kernels. Every invocation evaluates one row of {@link #ROW} samples, so the
+ * reported time is per sample. The gradient benchmarks compare the analytic gradient against
+ * forward differences, which need one extra fBm call per axis.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PerlinBenchmark {
+
+    static final int ROW = 1024;
+    static final double STEP = 0.005;
+
+    @Param({"1", "3", "9"})
+    public int octaves;
+
+    private Object _noise2d;
+    private Object _noise3d;
+    private float[] _region;
+    private double[] _gradient = new double[3];
+
+    @Setup
+    public void setup() throws Throwable {
+        _noise2d = (Object) Kernels.NEW_PERLIN_2D.invokeExact(42, octaves, 2.1379201, 0.836281);
+        _noise3d = (Object) Kernels.NEW_PERLIN_3D.invokeExact(42, octaves, 2.1379201, 0.836281);
+        _region = new float[ROW];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROW)
+    public double noise2d() throws Throwable {
+        double sum = 0;
+        for (int i = 0; i < ROW; i++)
+            sum += (double) Kernels.NOISE_2D.invokeExact(_noise2d, i * STEP, 0.37);
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROW)
+    public double fBm2d() throws Throwable {
+        double sum = 0;
+        for (int i = 0; i < ROW; i++)
+            sum += (double) Kernels.FBM_2D.invokeExact(_noise2d, i * STEP, 0.37);
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROW)
+    public float[] fBm2dRegion() throws Throwable {
+        Kernels.FBM_2D_REGION.invokeExact(_noise2d, 0.0, 0.37, STEP, ROW, 1, _region);
+        return _region;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROW)
+    public double noise3d() throws Throwable {
+        double sum = 0;
+        for (int i = 0; i < ROW; i++)
+            sum += (double) Kernels.NOISE_3D.invokeExact(_noise3d, i * STEP, 0.0, 0.37);
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROW)
+    public double fBm3d() throws Throwable {
+        double sum = 0;
+        for (int i = 0; i < ROW; i++)
+            sum += (double) Kernels.FBM_3D.invokeExact(_noise3d, i * STEP, 0.0, 0.37);
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROW)
+    public float[] fBm3dRegion() throws Throwable {
+        Kernels.FBM_3D_REGION.invokeExact(_noise3d, 0.0, 0.0, 0.37, STEP, ROW, 1, 1, _region);
+        return _region;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROW)
+    public double fBm2dGradient() throws Throwable {
+        double sum = 0;
+        for (int i = 0; i < ROW; i++)
+            sum += (double) Kernels.FBM_2D_GRADIENT.invokeExact(_noise2d, i * STEP, 0.37, _gradient) + _gradient[0] + _gradient[1];
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROW)
+    public double fBm2dDifferences() throws Throwable {
+        double sum = 0;
+        for (int i = 0; i < ROW; i++) {
+            double value = (double) Kernels.FBM_2D.invokeExact(_noise2d, i * STEP, 0.37);
+            sum += value + ((double) Kernels.FBM_2D.invokeExact(_noise2d, i * STEP + 1e-4, 0.37) - value) * 1e4
+                    + ((double) Kernels.FBM_2D.invokeExact(_noise2d, i * STEP, 0.37 + 1e-4) - value) * 1e4;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROW)
+    public double fBm3dGradient() throws Throwable {
+        double sum = 0;
+        for (int i = 0; i < ROW; i++)
+            sum += (double) Kernels.FBM_3D_GRADIENT.invokeExact(_noise3d, i * STEP, 0.0, 0.37, _gradient)
+                    + _gradient[0] + _gradient[1] + _gradient[2];
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROW)
+    public double fBm3dDifferences() throws Throwable {
+        double sum = 0;
+        for (int i = 0; i < ROW; i++) {
+            double value = (double) Kernels.FBM_3D.invokeExact(_noise3d, i * STEP, 0.0, 0.37);
+            sum += value + ((double) Kernels.FBM_3D.invokeExact(_noise3d, i * STEP + 1e-4, 0.0, 0.37) - value) * 1e4
+                    + ((double) Kernels.FBM_3D.invokeExact(_noise3d, i * STEP, 1e-4, 0.37) - value) * 1e4
+                    + ((double) Kernels.FBM_3D.invokeExact(_noise3d, i * STEP, 0.0, 0.37 + 1e-4) - value) * 1e4;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,45 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Midpoint displacement kernels on one plasma tile. The reported time is per output pixel.
+ * calcPlasmaPiece runs the iterative engine, divideGrid the recursion it replaces.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PlasmaBenchmark {
+
+    static final int TILE_WIDTH = 512;
+    static final int TILE_HEIGHT = 128;
+    static final int PIXELS = TILE_WIDTH * TILE_HEIGHT;
+
+    private Object _plasma;
+    private Object _field;
+
+    @Setup
+    public void setup() throws Throwable {
+        _plasma = (Object) Kernels.NEW_PLASMA.invokeExact(42, TILE_WIDTH, TILE_HEIGHT, 1f);
+        _field = (Object) Kernels.NEW_FIELD.invokeExact(TILE_WIDTH, TILE_HEIGHT);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIXELS)
+    public Object calcPlasmaPiece() throws Throwable {
+        Kernels.CALC_PLASMA_PIECE.invokeExact(_plasma, _field, 0, 0);
+        return _field;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIXELS)
+    public Object divideGrid() throws Throwable {
+        Kernels.DIVIDE_GRID.invokeExact(_plasma, _field, 0f, 0f, (float) TILE_WIDTH, (float) TILE_HEIGHT, 0.2f, 0.4f, 0.6f, 0.8f);
+        return _field;
+    }
+}
@@ -0,0 +1,103 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Perlin region methods with the scalar and the Vector API row kernels, in double and in
+ * single precision. Every invocation evaluates {@link #ROWS} rows of {@link PerlinBenchmark#ROW}
+ * samples, the reported time is per sample. {@link #report()} compares the single against the
+ * double precision noise, VectorRegionTest checks that both kernels match the per-sample fBm
+ * functions bit for bit.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class VectorBenchmark {
+
+    static final int ROWS = 4;
+    static final int SAMPLES = PerlinBenchmark.ROW * ROWS;
+
+    @Param({"false", "true"})
+    public boolean vector;
+
+    @Param({"1", "3", "9"})
+    public int octaves;
+
+    private Object _noise2d;
+    private Object _noise3d;
+    private float[] _region;
+
+    @Setup
+    public void setup() throws Throwable {
+        // Each benchmark runs in its own fork, so the property is set before the kernels are chosen
+        System.setProperty("plasma.vector", String.valueOf(vector));
+        if (vector && (int) Kernels.VECTOR_LANES.invokeExact() == 0)
+            throw new IllegalStateException("The vector kernels are not available");
+
+        _noise2d = (Object) Kernels.NEW_PERLIN_2D.invokeExact(42, octaves, 2.1379201, 0.836281);
+        _noise3d = (Object) Kernels.NEW_PERLIN_3D.invokeExact(42, octaves, 2.1379201, 0.836281);
+        _region = new float[SAMPLES];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public float[] fBm2dRegion() throws Throwable {
+        Kernels.FBM_2D_REGION.invokeExact(_noise2d, 0.0, 0.37, PerlinBenchmark.STEP, PerlinBenchmark.ROW, ROWS, _region);
+        return _region;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public float[] fBm3dRegion() throws Throwable {
+        Kernels.FBM_3D_REGION.invokeExact(_noise3d, 0.0, 0.37, 0.11, PerlinBenchmark.STEP, PerlinBenchmark.ROW, ROWS, 1, _region);
+        return _region;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public float[] fBm2fRegion() throws Throwable {
+        Kernels.FBM_2F_REGION.invokeExact(_noise2d, 0.0f, 0.37f, (float) PerlinBenchmark.STEP, PerlinBenchmark.ROW, ROWS, _region);
+        return _region;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public float[] fBm3fRegion() throws Throwable {
+        Kernels.FBM_3F_REGION.invokeExact(_noise3d, 0.0f, 0.37f, 0.11f, (float) PerlinBenchmark.STEP, PerlinBenchmark.ROW, ROWS, 1, _region);
+        return _region;
+    }
+
+    /**
+     * Prints the lanes of the vector kernels and the largest difference between the region
+     * methods and the scalar per-sample fBm functions. The kernels are exact, so it should be 0.
+     * Then prints the largest difference between the single and the double precision regions.
+     */
+    static void report() throws Throwable {
+        int lanes = (int) Kernels.VECTOR_LANES.invokeExact();
+        int floatLanes = (int) Kernels.VECTOR_FLOAT_LANES.invokeExact();
+        System.out.println(lanes == 0 ? "Vector kernels not available"
+                : "Vector kernels with " + lanes + " double and " + floatLanes + " float lanes");
+
+        // The single precision deviation on a 1024 x 64 field at the scale of the GenerationEngine
+        int width = 1024, height = 64;
+        float[] single = new float[width * height], exact = new float[width * height];
+
+        for (int octaves = 1; octaves <= 9; octaves += 4) {
+            Object noise3d = (Object) Kernels.NEW_PERLIN_3D.invokeExact(42, octaves, 2.1379201, 0.836281);
+            Kernels.FBM_3F_REGION.invokeExact(noise3d, 0.0f, 0.0f, 0.0f, 0.005f, width, 1, height, single);
+            Kernels.FBM_3D_REGION.invokeExact(noise3d, 0.0, 0.0, 0.0, 0.005, width, 1, height, exact);
+
+            double max = 0;
+            for (int i = 0; i < single.length; i++)
+                max = Math.max(max, Math.abs(single[i] - exact[i]));
+
+            System.out.println(String.format("octaves=%d: max |fBm3f - fBm3d| %.3g over %d samples", octaves, max, single.length));
+        }
+        System.out.println();
+    }
+}